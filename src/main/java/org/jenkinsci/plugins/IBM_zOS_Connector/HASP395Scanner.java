@@ -0,0 +1,137 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <h2>HASP395Scanner</h2>
+ * Pass-through stream looking for <code>$HASP395 JOBNAME ENDED</code> message (and <code>JCL ERROR</code> before it)
+ * in the job log while it's being retrieved. Used with <code>JESINTERFACELEVEL=1</code>, where the listing has no RC,
+ * so the job log doesn't have to be retrieved twice or held in memory.
+ *
+ * @see ZFTPConnector
+ */
+final class HASP395Scanner extends FilterOutputStream {
+    /**
+     * Longest line prefix kept for matching. HASP messages are far shorter.
+     */
+    private static final int maxLineLength = 1024;
+
+    /**
+     * Job name, <code>null</code> to accept any.
+     */
+    private final String jobName;
+    /**
+     * Current line.
+     */
+    private final StringBuilder line = new StringBuilder(256);
+    /**
+     * Whether <code>JCL ERROR</code> was seen before HASP395.
+     */
+    private boolean sawJCLError;
+    /**
+     * First HASP395 line of the job, <code>null</code> if not seen (yet).
+     */
+    private String HASP395Line;
+    /**
+     * RC part of HASP395 line, <code>null</code> if there was none.
+     */
+    private String rc;
+
+    /**
+     * Constructor.
+     *
+     * @param out     Stream to pass the job log to. Can be <code>null</code>.
+     * @param jobName Job name, <code>null</code> to accept any.
+     */
+    HASP395Scanner(OutputStream out, String jobName) {
+        super(out != null ? out : new NullOutputStream());
+        this.jobName = jobName;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.out.write(b);
+        this.scan(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        this.out.write(b, off, len);
+        for (int i = off; i < off + len; i++) {
+            this.scan(b[i]);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.endLine();
+        super.close();
+    }
+
+    /**
+     * @param b Next byte of the job log.
+     */
+    private void scan(int b) {
+        if (this.HASP395Line != null)
+            return;
+        char c = (char) (b & 0xff);
+        if (c == '\n') {
+            this.endLine();
+        } else if (c != '\r' && this.line.length() < maxLineLength) {
+            this.line.append(c);
+        }
+    }
+
+    /**
+     * Check complete line: <code>... $HASP395 JOBNAME ENDED[ - RC=nnnn]</code>.
+     */
+    private void endLine() {
+        if (this.HASP395Line == null && this.line.length() > 0) {
+            String text = this.line.toString();
+            this.sawJCLError |= text.contains("JCL ERROR");
+            int at = text.indexOf("HASP395");
+            if (at >= 0) {
+                JESJobStatus.Tokens tokens = new JESJobStatus.Tokens(text);
+                tokens.pos = at + "HASP395".length();
+                String name = tokens.next();
+                if (name != null && (this.jobName == null || this.jobName.equals(name)) && "ENDED".equals(tokens.next())) {
+                    this.HASP395Line = text;
+                    this.rc = "-".equals(tokens.next()) ? tokens.next() : null;
+                }
+            }
+        }
+        this.line.setLength(0);
+    }
+
+    /**
+     * Finish scanning of the last (unterminated) line.
+     */
+    void finish() {
+        this.endLine();
+    }
+
+    /**
+     * @return HASP395 line of the job or <code>null</code> if it wasn't found.
+     */
+    String getHASP395Line() {
+        return this.HASP395Line;
+    }
+
+    /**
+     * @return RC part of HASP395 line or <code>null</code> if there was none.
+     */
+    String getRC() {
+        return this.rc;
+    }
+
+    /**
+     * @return Whether <code>JCL ERROR</code> was seen before HASP395.
+     */
+    boolean sawJCLError() {
+        return this.sawJCLError;
+    }
+}
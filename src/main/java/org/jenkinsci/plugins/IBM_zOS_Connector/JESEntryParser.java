@@ -0,0 +1,97 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.apache.commons.net.ftp.FTPClientConfig;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.apache.commons.net.ftp.FTPFileEntryParserImpl;
+import org.apache.commons.net.ftp.parser.FTPFileEntryParserFactory;
+
+/**
+ * <h2>JESEntryParser</h2>
+ * Listing parser for <code>filetype=jes</code>.
+ * Unlike MVS parser from <i>Apache Commons-Net</i> it keeps jobs in every state (not only OUTPUT),
+ * names each entry by its job ID and skips headers,
+ * so callers can look up the job they need instead of matching every line.
+ * Each line is parsed once into {@link JESJobStatus} carried by the entry.
+ * Spool file lines (listing of a single job with <code>JESINTERFACELEVEL=2</code>) become {@link SpoolEntry}.
+ *
+ * @see ZFTPSessionPool
+ */
+final class JESEntryParser extends FTPFileEntryParserImpl {
+    /**
+     * Factory to be installed into FTP clients working with JES.
+     */
+    static final FTPFileEntryParserFactory FACTORY = new FTPFileEntryParserFactory() {
+        @Override
+        public FTPFileEntryParser createFileEntryParser(String key) {
+            return new JESEntryParser();
+        }
+
+        @Override
+        public FTPFileEntryParser createFileEntryParser(FTPClientConfig config) {
+            return new JESEntryParser();
+        }
+    };
+
+    /**
+     * Parse single listing line.
+     * JESINTERFACELEVEL=1: <code>JOBNAME JOBID STATUS ...</code>,
+     * JESINTERFACELEVEL=2: <code>JOBNAME JOBID OWNER STATUS ...</code>.
+     *
+     * @param entry Listing line.
+     * @return {@link Entry} named after job ID or {@link SpoolEntry} named after spool file number with the raw line kept,
+     * or <code>null</code> if the line is neither.
+     */
+    @Override
+    public FTPFile parseFTPEntry(String entry) {
+        JESJobStatus status = JESJobStatus.parse(entry);
+        if (status == null) {
+            JESSpoolFile spoolFile = JESSpoolFile.parse(entry);
+            if (spoolFile == null)
+                return null;
+            SpoolEntry file = new SpoolEntry(spoolFile);
+            file.setRawListing(entry);
+            file.setName(String.valueOf(spoolFile.id));
+            file.setType(FTPFile.FILE_TYPE);
+            file.setSize(spoolFile.byteCount);
+            return file;
+        }
+        Entry file = new Entry(status);
+        file.setRawListing(entry);
+        file.setName(status.jobID);
+        file.setType(FTPFile.FILE_TYPE);
+        return file;
+    }
+
+    /**
+     * <h2>JESEntryParser.Entry</h2>
+     * Listing entry with parsed job status.
+     */
+    static final class Entry extends FTPFile {
+        private static final long serialVersionUID = 1L;
+        /**
+         * Parsed job status.
+         */
+        final transient JESJobStatus status;
+
+        private Entry(JESJobStatus status) {
+            this.status = status;
+        }
+    }
+
+    /**
+     * <h2>JESEntryParser.SpoolEntry</h2>
+     * Listing entry of a job spool file.
+     */
+    static final class SpoolEntry extends FTPFile {
+        private static final long serialVersionUID = 1L;
+        /**
+         * Parsed spool file.
+         */
+        final transient JESSpoolFile spoolFile;
+
+        private SpoolEntry(JESSpoolFile spoolFile) {
+            this.spoolFile = spoolFile;
+        }
+    }
+}
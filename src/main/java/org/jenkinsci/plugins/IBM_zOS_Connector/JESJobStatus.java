@@ -0,0 +1,214 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+/**
+ * <h2>JESJobStatus</h2>
+ * Job status parsed from a <code>filetype=jes</code> listing line.
+ * Columns are taken directly from the line, no regular expressions are involved:
+ * <ul>
+ * <li><code>JESINTERFACELEVEL=1</code>: <code>JOBNAME JOBID STATUS ...</code></li>
+ * <li><code>JESINTERFACELEVEL=2</code>: <code>JOBNAME JOBID OWNER STATUS CLASS [RC=nnnn|ABEND=xxx|(JCL error)|RC unknown] ...</code></li>
+ * </ul>
+ *
+ * @see JESEntryParser
+ * @see HASP395Scanner
+ */
+final class JESJobStatus {
+    /**
+     * JES job state.
+     */
+    enum State {
+        INPUT, HELD, ACTIVE, OUTPUT, UNKNOWN;
+
+        /**
+         * @param token Listing column.
+         * @return State or <code>null</code> if the column is not a state.
+         */
+        static State of(String token) {
+            switch (token) {
+                case "INPUT":
+                    return INPUT;
+                case "HELD":
+                    return HELD;
+                case "ACTIVE":
+                    return ACTIVE;
+                case "OUTPUT":
+                    return OUTPUT;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Raw listing line.
+     */
+    final String entry;
+    /**
+     * Job name.
+     */
+    final String jobName;
+    /**
+     * JES job ID.
+     */
+    final String jobID;
+    /**
+     * Job owner, <code>null</code> with <code>JESINTERFACELEVEL=1</code>.
+     */
+    final String owner;
+    /**
+     * Job state.
+     */
+    final State state;
+    /**
+     * Return code (<code>0004</code>, <code>UNKNOWN</code> etc.), <code>null</code> if not reported.
+     */
+    private String rc;
+    /**
+     * ABEND code, <code>null</code> if the job didn't ABEND.
+     */
+    private String abend;
+    /**
+     * Whether the job failed with JCL error.
+     */
+    private boolean jclError;
+
+    private JESJobStatus(String entry, String jobName, String jobID, String owner, State state) {
+        this.entry = entry;
+        this.jobName = jobName;
+        this.jobID = jobID;
+        this.owner = owner;
+        this.state = state;
+    }
+
+    /**
+     * Parse listing line.
+     *
+     * @param entry Listing line.
+     * @return Job status or <code>null</code> if the line is not about a job (header, spool file etc.).
+     */
+    static JESJobStatus parse(String entry) {
+        Tokens tokens = new Tokens(entry);
+        String jobName = tokens.next();
+        String jobID = tokens.next();
+        String third = tokens.next();
+        // Job names never start with a digit, spool file lines of the job listing (001 S12345 ...) do.
+        if (third == null || Character.isDigit(jobName.charAt(0)) || !isJobID(jobID))
+            return null;
+
+        String owner = null;
+        State state = State.of(third);
+        if (state == null) {
+            // JESINTERFACELEVEL=2: OWNER comes before STATUS.
+            int mark = tokens.pos;
+            String fourth = tokens.next();
+            state = (fourth != null) ? State.of(fourth) : null;
+            if (state != null) {
+                owner = third;
+            } else {
+                tokens.pos = mark;
+                state = State.UNKNOWN;
+            }
+        }
+        JESJobStatus status = new JESJobStatus(entry, jobName, jobID, owner, state);
+        status.completion(tokens);
+        return status;
+    }
+
+    /**
+     * Job CC from completion text outside of the listing, e.g. HASP395 message.
+     *
+     * @param text Text with <code>RC=nnnn</code>, <code>ABEND=xxx</code> etc.
+     * @return Job CC or <code>null</code> if the text has no completion info.
+     * @see #getJobCC()
+     */
+    static String parseJobCC(String text) {
+        JESJobStatus status = new JESJobStatus(text, null, null, null, State.OUTPUT);
+        status.completion(new Tokens(text));
+        return status.getJobCC();
+    }
+
+    /**
+     * Take completion info (<code>RC=nnnn</code>, <code>RC unknown</code>, <code>ABEND=xxx</code>, <code>(JCL error)</code>).
+     *
+     * @param tokens Tokens to scan.
+     */
+    private void completion(Tokens tokens) {
+        for (String token = tokens.next(); token != null; token = tokens.next()) {
+            if (token.startsWith("RC=")) {
+                if (token.length() > 3)
+                    this.rc = token.substring(3);
+            } else if (token.equals("RC")) {
+                String value = tokens.next();
+                if (value != null)
+                    this.rc = value.toUpperCase();
+            } else if (token.startsWith("ABEND=")) {
+                this.abend = token.substring(6);
+            } else if (token.equals("(JCL")) {
+                String value = tokens.next();
+                if (value != null && value.equalsIgnoreCase("error)"))
+                    this.jclError = true;
+            }
+        }
+    }
+
+    /**
+     * @return Job CC the way connector reports it: <code>JCL_ERROR</code>, <code>ABEND_xxx</code>, RC,
+     * or <code>null</code> if there is no completion info.
+     */
+    String getJobCC() {
+        if (this.jclError)
+            return "JCL_ERROR";
+        if (this.abend != null)
+            return "ABEND_" + this.abend;
+        return this.rc;
+    }
+
+    /**
+     * @param token Listing column.
+     * @return Whether it looks like JES job ID: 1-3 letters followed by 5-7 digits (JOB00123, J0012345, STC00123...).
+     */
+    static boolean isJobID(String token) {
+        if (token == null)
+            return false;
+        int letters = 0;
+        while (letters < token.length() && token.charAt(letters) >= 'A' && token.charAt(letters) <= 'Z')
+            letters++;
+        int digits = token.length() - letters;
+        if (letters < 1 || letters > 3 || digits < 5 || digits > 7)
+            return false;
+        for (int i = letters; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * <h2>JESJobStatus.Tokens</h2>
+     * Whitespace-separated columns of a line, produced one by one.
+     */
+    static final class Tokens {
+        private final String line;
+        int pos;
+
+        Tokens(String line) {
+            this.line = line;
+        }
+
+        /**
+         * @return Next column or <code>null</code> at the end of line.
+         */
+        String next() {
+            int length = this.line.length();
+            while (this.pos < length && Character.isWhitespace(this.line.charAt(this.pos)))
+                this.pos++;
+            if (this.pos >= length)
+                return null;
+            int start = this.pos;
+            while (this.pos < length && !Character.isWhitespace(this.line.charAt(this.pos)))
+                this.pos++;
+            return this.line.substring(start, this.pos);
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <h2>JESMonitor</h2>
+ * Shared JES status poller. Connectors register submitted jobs here and the monitor issues a single
+ * spool listing per LPAR/owner per tick, completing each waiter once its job reaches OUTPUT.
+ * This way the number of JES LIST commands depends on the number of LPARs, not on the number of builds.
+ * Each job has its own {@link PollingStrategy}; a tick happens when the earliest of them is due
+ * and its listing serves all jobs of the LPAR.
+ * Durations of completed jobs are recorded in {@link JobDurationStatistics}.
+ *
+ * Ticks are timed by {@link ZOSWaitEngine} scheduler, which only hands them over to workers:
+ * listings (connect, logon, LIST) and dispatching their results never run on a scheduler thread,
+ * so a slow LPAR doesn't delay ticks of other LPARs or wait timeouts.
+ *
+ * @see ZFTPConnector
+ * @see ZFTPSessionPool
+ */
+final class JESMonitor {
+    /**
+     * Simple logger.
+     */
+    private static final Logger logger = Logger.getLogger(JESMonitor.class.getName());
+    /**
+     * Jobs due within this many milliseconds of the tick are polled by it.
+     */
+    private static final long tickTolerance = 100;
+    /**
+     * Delay before retrying failed listing.
+     */
+    private static final long retryInterval = 10 * 1000;
+    /**
+     * Give up on waiters after this many listings in a row have failed.
+     */
+    private static final int maxListingFailures = 6;
+    /**
+     * The monitor.
+     */
+    private static final JESMonitor INSTANCE = new JESMonitor();
+
+    /**
+     * Waiters grouped by session key.
+     */
+    private final Map<ZFTPSessionPool.Key, Group> groups = new HashMap<>();
+    /**
+     * Issues the listings.
+     */
+    private final Lister lister;
+
+    /**
+     * Monitor listing over pooled FTP sessions.
+     */
+    private JESMonitor() {
+        this(JESMonitor::listFTP);
+    }
+
+    /**
+     * @param lister Issues the listings.
+     */
+    JESMonitor(Lister lister) {
+        this.lister = lister;
+    }
+
+    /**
+     * @return JVM-wide monitor.
+     */
+    static JESMonitor get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register job for monitoring.
+     *
+     * @param server             LPAR name or IP address.
+     * @param port               FTP port.
+     * @param userID             UserID.
+     * @param password           User password.
+     * @param JESINTERFACELEVEL1 Is FTP server configured for JESINTERFACELEVEL=1?
+     * @param FTPActiveMode      FTP data transfer mode (true=active, false=passive).
+     * @param jobID              JES job ID.
+     * @param strategy           How often to poll for the job.
+     * @param listed             Whether the job is known to be in JES already (e.g. watched again after restart),
+     *                           so that the first listing without it means it's gone. A job just submitted
+     *                           may take a while to be listed.
+     * @return Watch whose future holds job status once the job is in OUTPUT,
+     * or <code>null</code> if the job vanished from JES after it was observed.
+     * Cancel the future to stop monitoring.
+     */
+    Watch watch(String server, int port, String userID, String password,
+                boolean JESINTERFACELEVEL1, boolean FTPActiveMode, String jobID, PollingStrategy strategy, boolean listed) {
+        ZFTPSessionPool.Key key = new ZFTPSessionPool.Key(server, port, userID, password, JESINTERFACELEVEL1);
+        Watch watch = new Watch(jobID, strategy, listed);
+        synchronized (this) {
+            Group group = this.groups.computeIfAbsent(key, k -> new Group(k, password, FTPActiveMode));
+            group.watches.add(watch);
+            group.schedule(watch.nextPoll);
+        }
+        return watch;
+    }
+
+    /**
+     * @return Number of jobs being monitored.
+     */
+    synchronized int getWatchCount() {
+        return this.groups.values().stream().mapToInt(g -> g.watches.size()).sum();
+    }
+
+    /**
+     * @return Number of LPAR/user groups polled.
+     */
+    synchronized int getGroupCount() {
+        return this.groups.size();
+    }
+
+    /**
+     * List JES over a pooled session.
+     *
+     * @param key           Session key.
+     * @param password      User password.
+     * @param FTPActiveMode FTP data transfer mode (true=active, false=passive).
+     * @param pathname      Job ID or <code>*</code> for all jobs of the user.
+     * @return Job statuses by job ID, <code>null</code> if the server is at its session limit.
+     * @throws IOException if listing failed.
+     */
+    private static Map<String, JESJobStatus> listFTP(ZFTPSessionPool.Key key, String password, boolean FTPActiveMode,
+                                                     String pathname) throws IOException {
+        ZFTPSessionPool pool = ZFTPSessionPool.get();
+        // Never wait in the server's queue: a tick holds a worker, builds waiting for sessions hold job workers.
+        ZFTPSessionPool.Session session = pool.tryBorrow(key.server, key.port, key.userID, password, key.JESINTERFACELEVEL1);
+        if (session == null)
+            return null;
+        try {
+            if (FTPActiveMode) {
+                session.client.enterLocalActiveMode();
+            } else {
+                session.client.enterLocalPassiveMode();
+            }
+            FTPFile[] listing = session.client.listFiles(pathname);
+            if (listing == null) {
+                throw new IOException("failed to list available jobs");
+            }
+            pool.release(session);
+            Map<String, JESJobStatus> entries = new HashMap<>();
+            for (FTPFile ftpFile : listing) {
+                if (ftpFile instanceof JESEntryParser.Entry)
+                    entries.put(ftpFile.getName(), ((JESEntryParser.Entry) ftpFile).status);
+            }
+            return entries;
+        } catch (IOException e) {
+            pool.invalidate(session);
+            throw e;
+        }
+    }
+
+    /**
+     * <h2>JESMonitor.Lister</h2>
+     * Source of JES listings.
+     */
+    @FunctionalInterface
+    interface Lister {
+        /**
+         * @param key           Session key.
+         * @param password      User password.
+         * @param FTPActiveMode FTP data transfer mode (true=active, false=passive).
+         * @param pathname      Job ID or <code>*</code> for all jobs of the user.
+         * @return Job statuses by job ID, <code>null</code> if the server is at its session limit.
+         * @throws IOException if listing failed.
+         */
+        Map<String, JESJobStatus> list(ZFTPSessionPool.Key key, String password, boolean FTPActiveMode, String pathname)
+                throws IOException;
+    }
+
+    /**
+     * <h2>JESMonitor.Watch</h2>
+     * Single registered job.
+     */
+    static final class Watch {
+        /**
+         * JES job ID.
+         */
+        final String jobID;
+        /**
+         * Completed with the job status once the job is in OUTPUT.
+         */
+        final CompletableFuture<JESJobStatus> future = new CompletableFuture<>();
+        /**
+         * Poll delays.
+         */
+        private final PollingStrategy strategy;
+        /**
+         * Whether the job was known to be in JES when registered.
+         */
+        private final boolean listed;
+        /**
+         * Whether the job was ever seen in the listing.
+         */
+        private boolean observed;
+        /**
+         * Number of listings that covered the job.
+         */
+        private volatile int polls;
+        /**
+         * Time the job is due for the next poll.
+         */
+        private long nextPoll;
+        /**
+         * Time the job was registered (i.e. right after submission).
+         */
+        private final long submitted;
+        /**
+         * JES job name, known once the job is observed.
+         */
+        private String jobName;
+        /**
+         * Time the job was first seen ACTIVE, <code>0</code> if not yet.
+         */
+        private long activeSince;
+        /**
+         * Whether the job was seen waiting for execution, i.e. <code>activeSince</code> is accurate.
+         */
+        private boolean queued;
+        /**
+         * Past durations of the job, if predictive polling is on and the job ran before.
+         */
+        private JobDurationStatistics.Entry history;
+        /**
+         * Number of polls since the job overran its predicted end.
+         */
+        private int overruns;
+
+        private Watch(String jobID, PollingStrategy strategy, boolean listed) {
+            this.jobID = jobID;
+            this.strategy = strategy;
+            this.listed = listed;
+            this.submitted = System.currentTimeMillis();
+            this.nextPoll = this.submitted + strategy.nextDelay(0);
+        }
+
+        /**
+         * @param now Current time.
+         * @return Delay before the next poll in milliseconds.
+         */
+        private long nextDelay(long now) {
+            long end;
+            long spread;
+            if (this.history != null && this.activeSince > 0 && this.history.activeSamples > 0) {
+                end = this.activeSince + this.history.active;
+                spread = Math.max(2 * this.history.activeDeviation, this.history.active / 20);
+            } else if (this.history != null) {
+                end = this.submitted + this.history.total;
+                spread = Math.max(2 * this.history.totalDeviation, this.history.total / 20);
+            } else {
+                return this.strategy.nextDelay(this.polls);
+            }
+            if (now > end + spread)
+                this.overruns++;
+            return this.strategy.nextDelay(this.overruns, end - now, spread);
+        }
+
+        /**
+         * @return Number of JES listings that covered the job so far.
+         */
+        int getPolls() {
+            return this.polls;
+        }
+    }
+
+    /**
+     * <h2>JESMonitor.Group</h2>
+     * All jobs sharing the same LPAR and credentials, polled with a single listing.
+     */
+    private final class Group {
+        final ZFTPSessionPool.Key key;
+        final String password;
+        final boolean FTPActiveMode;
+        final List<Watch> watches = new ArrayList<>();
+        int failures;
+        /**
+         * Next tick, its time and generation. Ticks of older generations are stale and do nothing.
+         */
+        ScheduledFuture<?> tick;
+        long tickAt;
+        long generation;
+        /**
+         * Whether a tick is listing right now. It reschedules the group once it's done.
+         */
+        boolean listing;
+
+        Group(ZFTPSessionPool.Key key, String password, boolean FTPActiveMode) {
+            this.key = key;
+            this.password = password;
+            this.FTPActiveMode = FTPActiveMode;
+        }
+
+        /**
+         * Make sure there is a tick not later than the given time. Called with the monitor locked.
+         *
+         * @param at Time the tick is needed at.
+         */
+        void schedule(long at) {
+            if (this.tick != null && this.tickAt <= at + tickTolerance)
+                return;
+            if (this.tick != null)
+                this.tick.cancel(false);
+            long generation = ++this.generation;
+            this.tickAt = at;
+            ZOSWaitEngine engine = ZOSWaitEngine.get();
+            this.tick = engine.schedule(() -> engine.workers().execute(() -> this.tick(generation)), at - System.currentTimeMillis());
+        }
+
+        /**
+         * List JES once and dispatch the result to all jobs of the group. Runs on a worker.
+         *
+         * @param generation Generation of the tick.
+         */
+        void tick(long generation) {
+            List<Watch> current;
+            List<Watch> due = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            synchronized (JESMonitor.this) {
+                if (generation != this.generation)
+                    return;
+                this.tick = null;
+                if (this.listing)
+                    return;
+                this.watches.removeIf(w -> w.future.isDone());
+                if (this.watches.isEmpty()) {
+                    JESMonitor.this.groups.remove(this.key);
+                    return;
+                }
+                current = new ArrayList<>(this.watches);
+                for (Watch watch : current) {
+                    if (watch.nextPoll <= now + tickTolerance)
+                        due.add(watch);
+                }
+                this.listing = !due.isEmpty();
+            }
+            if (due.isEmpty()) {
+                this.reschedule(now);
+                return;
+            }
+
+            // Single due job is listed by ID, so only it is covered. Otherwise listing covers everybody.
+            List<Watch> covered = this.byJobID(due) ? due : current;
+            try {
+                Map<String, JESJobStatus> entries = this.list(covered);
+                if (entries == null) {
+                    // All sessions to the server are taken, try again later without counting a failure.
+                    logger.fine("JES listing skipped for " + this.key + ": no free FTP session");
+                    long retry = System.currentTimeMillis() + retryInterval;
+                    covered.forEach(w -> w.nextPoll = Math.max(w.nextPoll, retry));
+                } else {
+                    this.failures = 0;
+                    now = System.currentTimeMillis();
+                    for (Watch watch : covered) {
+                        this.dispatch(watch, entries);
+                        watch.polls++;
+                        watch.nextPoll = now + watch.nextDelay(now);
+                    }
+                }
+            } catch (ServerHealth.CircuitOpenException e) {
+                // Server is down (e.g. IPL): jobs stay in JES, keep waiting until it answers again.
+                logger.fine("JES listing skipped for " + this.key + ": " + e.getMessage());
+                long retry = System.currentTimeMillis() + retryInterval;
+                covered.forEach(w -> w.nextPoll = Math.max(w.nextPoll, retry));
+            } catch (IOException e) {
+                this.failures++;
+                logger.log(Level.WARNING, "JES listing failed for " + this.key + " (" + this.failures + " in a row)", e);
+                if (this.failures >= maxListingFailures) {
+                    covered.forEach(w -> w.future.completeExceptionally(e));
+                }
+                long retry = System.currentTimeMillis() + retryInterval;
+                covered.forEach(w -> w.nextPoll = Math.max(w.nextPoll, retry));
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "JES monitor failed for " + this.key, e);
+                covered.forEach(w -> w.future.completeExceptionally(e));
+            } finally {
+                synchronized (JESMonitor.this) {
+                    this.listing = false;
+                }
+            }
+            this.reschedule(System.currentTimeMillis());
+        }
+
+        /**
+         * Schedule tick for the earliest due job, or drop the group if there are none.
+         *
+         * @param now Current time.
+         */
+        private void reschedule(long now) {
+            synchronized (JESMonitor.this) {
+                this.watches.removeIf(w -> w.future.isDone());
+                if (this.watches.isEmpty()) {
+                    JESMonitor.this.groups.remove(this.key);
+                    return;
+                }
+                long next = Long.MAX_VALUE;
+                for (Watch watch : this.watches) {
+                    next = Math.min(next, watch.nextPoll);
+                }
+                this.schedule(Math.max(next, now));
+            }
+        }
+
+        /**
+         * @param watches Jobs to list.
+         * @return Whether the jobs are listed by job ID rather than all jobs of the user.
+         */
+        private boolean byJobID(List<Watch> watches) {
+            return watches.size() == 1 && !this.key.JESINTERFACELEVEL1;
+        }
+
+        /**
+         * List JES for the jobs.
+         * With JESINTERFACELEVEL=2 single job is listed by its ID, so the listing size doesn't depend on spool size.
+         * Otherwise all jobs of the group's user are listed at once.
+         *
+         * @param watches Jobs to list.
+         * @return Job statuses by job ID, <code>null</code> if the server is at its session limit.
+         * @throws IOException if listing failed.
+         */
+        private Map<String, JESJobStatus> list(List<Watch> watches) throws IOException {
+            String pathname = this.byJobID(watches) ? watches.get(0).jobID : "*";
+            return JESMonitor.this.lister.list(this.key, this.password, this.FTPActiveMode, pathname);
+        }
+
+        /**
+         * Complete watch if its job is in OUTPUT or vanished (or was never there, though known to be). Completed job durations are recorded.
+         *
+         * @param watch   Job to check.
+         * @param entries Current job statuses by job ID.
+         */
+        private void dispatch(Watch watch, Map<String, JESJobStatus> entries) {
+            JESJobStatus status = entries.get(watch.jobID);
+            if (status != null) {
+                JESJobStatus.State state = status.state;
+                long now = System.currentTimeMillis();
+                JobDurationStatistics statistics = JobDurationStatistics.get();
+                if (!watch.observed) {
+                    watch.observed = true;
+                    watch.jobName = status.jobName;
+                    if (statistics != null && watch.strategy.isPredictive())
+                        watch.history = statistics.lookup(this.key.server, watch.jobName);
+                }
+                if (state == JESJobStatus.State.INPUT || state == JESJobStatus.State.HELD) {
+                    watch.queued = true;
+                } else if (state == JESJobStatus.State.ACTIVE && watch.activeSince == 0) {
+                    watch.activeSince = now;
+                }
+                if (state == JESJobStatus.State.OUTPUT) {
+                    if (statistics != null)
+                        statistics.record(this.key.server, watch.jobName, now - watch.submitted,
+                                watch.queued && watch.activeSince > 0 ? now - watch.activeSince : -1);
+                    watch.future.complete(status);
+                }
+            } else if (watch.observed || watch.listed) {
+                watch.future.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import java.util.Collection;
+
+/**
+ * <h2>JESSpoolFile</h2>
+ * Spool file of a job, parsed from <code>JESINTERFACELEVEL=2</code> listing of a single job:
+ * <code>ID STEPNAME [PROCSTEP] C DDNAME BYTE-COUNT</code>.
+ * Retrieved separately as <code>JOBID.ID</code>.
+ *
+ * @see JESEntryParser
+ */
+final class JESSpoolFile {
+    /**
+     * Spool file number within the job.
+     */
+    final int id;
+    /**
+     * Step name.
+     */
+    final String stepName;
+    /**
+     * Procedure step name, <code>null</code> if none.
+     */
+    final String procStep;
+    /**
+     * DD name.
+     */
+    final String ddName;
+    /**
+     * Size in bytes as reported by JES.
+     */
+    final long byteCount;
+
+    private JESSpoolFile(int id, String stepName, String procStep, String ddName, long byteCount) {
+        this.id = id;
+        this.stepName = stepName;
+        this.procStep = procStep;
+        this.ddName = ddName;
+        this.byteCount = byteCount;
+    }
+
+    /**
+     * Parse listing line.
+     *
+     * @param line Listing line.
+     * @return Spool file or <code>null</code> if the line is not a spool file.
+     */
+    static JESSpoolFile parse(String line) {
+        String[] columns = new String[7];
+        int count = 0;
+        JESJobStatus.Tokens tokens = new JESJobStatus.Tokens(line);
+        for (String token = tokens.next(); token != null; token = tokens.next()) {
+            if (count == columns.length)
+                return null;
+            columns[count++] = token;
+        }
+        if (count < 5 || count > 6 || !isNumber(columns[0]) || !isNumber(columns[count - 1]) || columns[count - 3].length() != 1)
+            return null;
+        return new JESSpoolFile(Integer.parseInt(columns[0]),
+                columns[1],
+                (count == 6) ? columns[2] : null,
+                columns[count - 2],
+                Long.parseLong(columns[count - 1]));
+    }
+
+    /**
+     * @param names Upper case DD, step or procedure step names.
+     * @return Whether the spool file is one of them.
+     */
+    boolean matches(Collection<String> names) {
+        return names.contains(this.ddName.toUpperCase()) ||
+                names.contains(this.stepName.toUpperCase()) ||
+                (this.procStep != null && names.contains(this.procStep.toUpperCase()));
+    }
+
+    /**
+     * @param token Listing column.
+     * @return Whether the column is a decimal number.
+     */
+    private static boolean isNumber(String token) {
+        if (token.isEmpty() || token.length() > 18)
+            return false;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return this.stepName + (this.procStep != null ? "." + this.procStep : "") + "." + this.ddName;
+    }
+}
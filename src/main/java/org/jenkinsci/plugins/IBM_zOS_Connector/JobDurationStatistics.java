@@ -0,0 +1,254 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import hudson.XmlFile;
+import hudson.init.Terminator;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <h2>JobDurationStatistics</h2>
+ * Observed durations of z/OS jobs by LPAR and job name, kept in <code>JENKINS_HOME</code>.
+ * Same JCL is submitted over and over, so its past durations predict when to look for it in JES.
+ * Changes are written at most once a minute by an engine worker, outside of the store's lock,
+ * and once more when Jenkins shuts down. Only available on the controller.
+ *
+ * @see JESMonitor
+ * @see PollingStrategy
+ */
+final class JobDurationStatistics {
+    /**
+     * Simple logger.
+     */
+    private static final Logger logger = Logger.getLogger(JobDurationStatistics.class.getName());
+    /**
+     * Number of job names remembered. Least recently completed are forgotten first.
+     */
+    private static final int maxEntries = 1000;
+    /**
+     * Weight of the latest observation in moving averages.
+     */
+    private static final double weight = 0.3;
+    /**
+     * Don't write the store more often than once a minute.
+     */
+    private static final long saveInterval = 60 * 1000;
+    /**
+     * The store.
+     */
+    private static JobDurationStatistics instance;
+
+    /**
+     * Statistics by <code>SERVER/JOBNAME</code>, least recently updated first.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    /**
+     * Last time the store was written.
+     */
+    private transient long lastSaved;
+    /**
+     * Whether there are changes not written yet.
+     */
+    private transient boolean dirty;
+    /**
+     * Whether a write is scheduled.
+     */
+    private transient boolean saveScheduled;
+    /**
+     * Keeps writes in order, so an older snapshot never overwrites a newer one.
+     */
+    private final transient Object saveLock = new Object();
+
+    /**
+     * @return Store loaded from <code>JENKINS_HOME</code> or <code>null</code> if not running on the controller.
+     */
+    static synchronized JobDurationStatistics get() {
+        if (instance == null) {
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            if (jenkins == null)
+                return null;
+            instance = new JobDurationStatistics();
+            XmlFile file = getConfigFile(jenkins);
+            if (file.exists()) {
+                try {
+                    file.unmarshal(instance);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to load " + file, e);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param jenkins Jenkins instance.
+     * @return Persistent file of the store.
+     */
+    private static XmlFile getConfigFile(Jenkins jenkins) {
+        return new XmlFile(new File(jenkins.getRootDir(), JobDurationStatistics.class.getName() + ".xml"));
+    }
+
+    /**
+     * @param server  LPAR name or IP address.
+     * @param jobName JES job name.
+     * @return Copy of the job statistics or <code>null</code> if the job was never seen.
+     */
+    synchronized Entry lookup(String server, String jobName) {
+        Entry entry = this.entries.get(key(server, jobName));
+        return (entry == null) ? null : new Entry(entry);
+    }
+
+    /**
+     * Record observed job durations.
+     *
+     * @param server  LPAR name or IP address.
+     * @param jobName JES job name.
+     * @param total   Time from submission to OUTPUT in milliseconds.
+     * @param active  Time from ACTIVE to OUTPUT in milliseconds or <code>-1</code> if ACTIVE was not observed.
+     */
+    synchronized void record(String server, String jobName, long total, long active) {
+        String key = key(server, jobName);
+        Entry entry = this.entries.remove(key);
+        if (entry == null)
+            entry = new Entry();
+        entry.update(total, active);
+        this.entries.put(key, entry);
+
+        Iterator<String> it = this.entries.keySet().iterator();
+        while (this.entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+
+        this.dirty = true;
+        if (!this.saveScheduled) {
+            this.saveScheduled = true;
+            ZOSWaitEngine engine = ZOSWaitEngine.get();
+            engine.schedule(() -> engine.workers().execute(this::save),
+                    Math.max(0, this.lastSaved + saveInterval - System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Write snapshot of the store if it has changed since the last write.
+     */
+    void save() {
+        synchronized (this.saveLock) {
+            JobDurationStatistics snapshot = new JobDurationStatistics();
+            synchronized (this) {
+                this.saveScheduled = false;
+                if (!this.dirty)
+                    return;
+                this.dirty = false;
+                this.lastSaved = System.currentTimeMillis();
+                this.entries.forEach((k, v) -> snapshot.entries.put(k, new Entry(v)));
+            }
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            if (jenkins == null)
+                return;
+            try {
+                getConfigFile(jenkins).write(snapshot);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to save job duration statistics", e);
+                synchronized (this) {
+                    // Next recorded job tries again.
+                    this.dirty = true;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @param server  LPAR name or IP address.
+     * @param jobName JES job name.
+     * @return Store key.
+     */
+    private static String key(String server, String jobName) {
+        return server.toUpperCase() + "/" + jobName.toUpperCase();
+    }
+
+    /**
+     * <h2>JobDurationStatistics.Entry</h2>
+     * Moving averages (and mean deviations) of job durations in milliseconds.
+     */
+    static final class Entry {
+        long total;
+        long totalDeviation;
+        long active;
+        long activeDeviation;
+        int samples;
+        int activeSamples;
+
+        Entry() {
+        }
+
+        Entry(Entry other) {
+            this.total = other.total;
+            this.totalDeviation = other.totalDeviation;
+            this.active = other.active;
+            this.activeDeviation = other.activeDeviation;
+            this.samples = other.samples;
+            this.activeSamples = other.activeSamples;
+        }
+
+        /**
+         * @param total  Time from submission to OUTPUT.
+         * @param active Time from ACTIVE to OUTPUT or <code>-1</code>.
+         */
+        private void update(long total, long active) {
+            if (this.samples++ == 0) {
+                this.total = total;
+            } else {
+                this.totalDeviation = average(this.totalDeviation, Math.abs(total - this.total));
+                this.total = average(this.total, total);
+            }
+            if (active >= 0) {
+                if (this.activeSamples++ == 0) {
+                    this.active = active;
+                } else {
+                    this.activeDeviation = average(this.activeDeviation, Math.abs(active - this.active));
+                    this.active = average(this.active, active);
+                }
+            }
+        }
+
+        private static long average(long average, long value) {
+            return Math.round(average * (1 - weight) + value * weight);
+        }
+    }
+
+    /**
+     * @return Snapshot of all entries (for diagnostics).
+     */
+    synchronized Map<String, Entry> getEntries() {
+        Map<String, Entry> copy = new LinkedHashMap<>();
+        this.entries.forEach((k, v) -> copy.put(k, new Entry(v)));
+        return copy;
+    }
+
+    /**
+     * <h2>JobDurationStatistics.ShutdownFlush</h2>
+     * Writes changes not saved yet on Jenkins shutdown. Public, as Jenkins calls it reflectively.
+     */
+    public static final class ShutdownFlush {
+        private ShutdownFlush() {
+        }
+
+        @Terminator
+        public static void flush() {
+            JobDurationStatistics statistics;
+            synchronized (JobDurationStatistics.class) {
+                statistics = instance;
+            }
+            if (statistics != null)
+                statistics.save();
+        }
+    }
+}
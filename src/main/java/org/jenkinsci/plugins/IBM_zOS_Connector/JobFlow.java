@@ -0,0 +1,180 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <h2>JobFlow</h2>
+ * Dependency graph of z/OS jobs, one node per line:
+ * <pre>
+ * # comment
+ * ID: jobFile [on server] [after PRED[&lt;=RC], ...]
+ * </pre>
+ * A node runs once all its predecessors have ended with CC not above their RC condition
+ * (flow MaxCC if none given). Nodes are kept in the order of definition, cycles and unknown predecessors are rejected.
+ *
+ * @see ZOSJobFlowSubmitter
+ */
+final class JobFlow {
+    /**
+     * Node line.
+     */
+    private static final Pattern NodeLine = Pattern.compile("([\\w$#@-]+)\\s*:\\s*(\\S+)(?:\\s+on\\s+(\\S+))?(?:\\s+after\\s+(.+))?");
+    /**
+     * Predecessor with optional RC condition.
+     */
+    private static final Pattern Predecessor = Pattern.compile("([\\w$#@-]+)(?:<=(\\d{1,4}))?");
+
+    /**
+     * Nodes in topological order.
+     */
+    private final List<Node> nodes;
+
+    private JobFlow(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * @param text Flow definition.
+     * @return Parsed flow.
+     * @throws IllegalArgumentException if the definition is malformed, refers to unknown nodes or has a cycle.
+     */
+    static JobFlow parse(String text) {
+        Map<String, Node> nodes = new LinkedHashMap<>();
+        int lineNumber = 0;
+        for (String line : (text == null ? "" : text).split("\\r?\\n")) {
+            lineNumber++;
+            line = line.replaceAll("#.*", "").trim();
+            if (line.isEmpty())
+                continue;
+            Matcher matcher = NodeLine.matcher(line);
+            if (!matcher.matches())
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected 'ID: jobFile [on server] [after PRED[<=RC], ...]'");
+            Node node = new Node(matcher.group(1), matcher.group(2), matcher.group(3));
+            if (nodes.put(node.id, node) != null)
+                throw new IllegalArgumentException("Line " + lineNumber + ": node " + node.id + " defined twice");
+            if (matcher.group(4) != null) {
+                for (String item : matcher.group(4).replaceAll("\\s*<=\\s*", "<=").trim().split("\\s*,\\s*|\\s+")) {
+                    Matcher pred = Predecessor.matcher(item);
+                    if (!pred.matches())
+                        throw new IllegalArgumentException("Line " + lineNumber + ": bad predecessor '" + item + "'");
+                    String rc = pred.group(2);
+                    node.after.put(pred.group(1), (rc == null) ? null : "0000".substring(rc.length()) + rc);
+                }
+            }
+        }
+        if (nodes.isEmpty())
+            throw new IllegalArgumentException("Flow has no jobs");
+        for (Node node : nodes.values()) {
+            for (String pred : node.after.keySet()) {
+                Node predecessor = nodes.get(pred);
+                if (predecessor == null)
+                    throw new IllegalArgumentException("Node " + node.id + " runs after unknown node " + pred);
+                node.predecessors.add(predecessor);
+            }
+        }
+
+        // Kahn's algorithm, stable with respect to definition order.
+        List<Node> sorted = new ArrayList<>(nodes.size());
+        Map<Node, Integer> pending = new HashMap<>();
+        for (Node node : nodes.values())
+            pending.put(node, node.predecessors.size());
+        while (sorted.size() < nodes.size()) {
+            Node next = null;
+            for (Node node : nodes.values()) {
+                if (pending.get(node) == 0) {
+                    next = node;
+                    break;
+                }
+            }
+            if (next == null) {
+                StringBuilder cycle = new StringBuilder();
+                for (Node node : nodes.values()) {
+                    if (pending.get(node) > 0)
+                        cycle.append(cycle.length() == 0 ? "" : ", ").append(node.id);
+                }
+                throw new IllegalArgumentException("Dependency cycle among nodes " + cycle);
+            }
+            pending.put(next, -1);
+            sorted.add(next);
+            for (Node node : nodes.values()) {
+                if (node.predecessors.contains(next))
+                    pending.merge(node, -1, Integer::sum);
+            }
+        }
+        return new JobFlow(Collections.unmodifiableList(sorted));
+    }
+
+    /**
+     * @return Nodes, every node after its predecessors.
+     */
+    List<Node> getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Chain of nodes which determined the end of the flow: starting from the node that ended last,
+     * each step goes to the predecessor that ended last.
+     *
+     * @param end End time of a node, <code>0</code> if it didn't run.
+     * @return Critical path from the first node to the last one, empty if nothing ran.
+     */
+    List<Node> criticalPath(ToLongFunction<Node> end) {
+        LinkedList<Node> path = new LinkedList<>();
+        Node last = latest(this.nodes, end);
+        while (last != null) {
+            path.addFirst(last);
+            last = latest(last.predecessors, end);
+        }
+        return path;
+    }
+
+    private static Node latest(Collection<Node> nodes, ToLongFunction<Node> end) {
+        Node latest = null;
+        for (Node node : nodes) {
+            if (end.applyAsLong(node) > 0 && (latest == null || end.applyAsLong(node) > end.applyAsLong(latest)))
+                latest = node;
+        }
+        return latest;
+    }
+
+    /**
+     * <h2>JobFlow.Node</h2>
+     * Job of the flow.
+     */
+    static final class Node {
+        /**
+         * Node ID.
+         */
+        final String id;
+        /**
+         * Workspace path of the JCL.
+         */
+        final String jobFile;
+        /**
+         * LPAR to submit to, <code>null</code> for the flow server.
+         */
+        final String server;
+        /**
+         * Predecessor IDs mapped to their maximum CC, <code>null</code> for flow MaxCC.
+         */
+        final Map<String, String> after = new LinkedHashMap<>();
+        /**
+         * Predecessor nodes.
+         */
+        final List<Node> predecessors = new ArrayList<>();
+
+        Node(String id, String jobFile, String server) {
+            this.id = id;
+            this.jobFile = jobFile;
+            this.server = server;
+        }
+
+        @Override
+        public String toString() {
+            return this.id;
+        }
+    }
+}
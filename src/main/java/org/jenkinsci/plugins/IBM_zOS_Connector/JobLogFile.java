@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <h2>JobLogFile</h2>
+ * Job log streamed straight into a temporary workspace file (and optionally console) while it's retrieved.
+ * Final name depends on job name and CC known only at the end, so the file is renamed once the job is processed.
+ * Heap use doesn't depend on the job log size.
+ *
+ * @see ZOSJobSubmitter
+ * @see ZOSJobSubmitStep
+ */
+final class JobLogFile {
+    /**
+     * Size of the buffer between FTP data connection and the file.
+     */
+    private static final int bufferSize = 64 * 1024;
+
+    /**
+     * Temporary file in the workspace.
+     */
+    private final FilePath temp;
+    /**
+     * Stream into the file (and console).
+     */
+    private final OutputStream stream;
+
+    /**
+     * Constructor.
+     *
+     * @param workspace Workspace to create the file in.
+     * @param listener  Listener to duplicate the log to.
+     * @param toConsole Whether the log is duplicated to console.
+     * @throws IOException          if the file can't be created.
+     * @throws InterruptedException if interrupted.
+     */
+    JobLogFile(FilePath workspace, TaskListener listener, boolean toConsole) throws IOException, InterruptedException {
+        this.temp = workspace.createTempFile("zos-job", ".log");
+        OutputStream file = this.temp.write();
+        this.stream = new BufferedOutputStream(toConsole
+                ? new TeeOutputStream(file, new CloseShieldOutputStream(listener.getLogger()))
+                : file, bufferSize);
+    }
+
+    /**
+     * @return Stream to write the job log to.
+     */
+    OutputStream getStream() {
+        return this.stream;
+    }
+
+    /**
+     * Close the stream and give the file its final name.
+     *
+     * @param target Final file.
+     * @throws IOException          if the file can't be closed or renamed.
+     * @throws InterruptedException if interrupted.
+     */
+    void save(FilePath target) throws IOException, InterruptedException {
+        this.stream.close();
+        this.temp.renameTo(target);
+    }
+
+    /**
+     * Close the stream and delete the file, ignoring errors.
+     */
+    void discard() {
+        try {
+            this.stream.close();
+            this.temp.delete();
+        } catch (IOException | InterruptedException ignored) {
+        }
+    }
+}
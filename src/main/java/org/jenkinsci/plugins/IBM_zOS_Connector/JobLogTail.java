@@ -0,0 +1,270 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <h2>JobLogTail</h2>
+ * Live tail of the spool files of a running job (<code>JESINTERFACELEVEL=2</code> only) into the build console.
+ * Every tick the job's spool files are listed; only those whose byte count grew since the last tick are retrieved
+ * and the part already printed is skipped. No <code>REST</code>: z/OS honours it only in block and compressed modes,
+ * and ASCII transfers count bytes after CRLF conversion anyway.
+ * Ticks are driven by {@link ZOSWaitEngine} and hold no thread in between; a tick finding no free session
+ * to the server is skipped rather than waiting for one.
+ * Tailed data is kept per spool file, so once the job has ended it makes up the job log without transferring it again.
+ *
+ * @see ZFTPConnector#setLiveTail(boolean)
+ */
+final class JobLogTail {
+    /**
+     * Logger.
+     */
+    private static final Logger logger = Logger.getLogger(JobLogTail.class.getName());
+    /**
+     * Delay between ticks in milliseconds.
+     */
+    private static final long interval = Long.getLong(JobLogTail.class.getName() + ".interval", 10) * 1000;
+    /**
+     * Size of the copy buffer.
+     */
+    private static final int bufferSize = 8 * 1024;
+
+    private final String server;
+    private final int port;
+    private final String userID;
+    private final String password;
+    private final boolean FTPActiveMode;
+    private final String jobID;
+    /**
+     * Upper case DD or step names to tail, empty for all spool files.
+     */
+    private final Set<String> spoolFiles;
+    /**
+     * Build console.
+     */
+    private final PrintStream console;
+    /**
+     * JES byte count of each spool file when it was last retrieved.
+     */
+    private final Map<Integer, Long> listed = new HashMap<>();
+    /**
+     * Bytes of each spool file already printed.
+     */
+    private final Map<Integer, Long> printed = new HashMap<>();
+    /**
+     * Data of each spool file received so far.
+     */
+    private final Map<Integer, SpillableOutputStream> tailed = new HashMap<>();
+    /**
+     * Tailed spool files in the order of the last listing.
+     */
+    private List<JESSpoolFile> files = Collections.emptyList();
+    /**
+     * Spool file printed last, <code>null</code> if none yet.
+     */
+    private JESSpoolFile current;
+    /**
+     * Whether ticks are over.
+     */
+    private volatile boolean stopped;
+    /**
+     * Whether tailed data was dropped.
+     */
+    private boolean discarded;
+    /**
+     * Next tick.
+     */
+    private volatile ScheduledFuture<?> next;
+
+    /**
+     * Constructor.
+     *
+     * @param server        LPAR name or IP address to connect to.
+     * @param port          FTP port.
+     * @param userID        UserID.
+     * @param password      User password.
+     * @param FTPActiveMode FTP data transfer mode (true=active, false=passive).
+     * @param jobID         JES job ID.
+     * @param spoolFiles    Upper case DD or step names to tail, empty for all spool files.
+     * @param console       Build console.
+     */
+    JobLogTail(String server, int port, String userID, String password, boolean FTPActiveMode,
+               String jobID, Set<String> spoolFiles, PrintStream console) {
+        this.server = server;
+        this.port = port;
+        this.userID = userID;
+        this.password = password;
+        this.FTPActiveMode = FTPActiveMode;
+        this.jobID = jobID;
+        this.spoolFiles = spoolFiles;
+        this.console = console;
+    }
+
+    /**
+     * Start ticking.
+     */
+    void start() {
+        this.schedule();
+    }
+
+    /**
+     * Stop ticking. Output printed so far stays as is.
+     */
+    void stop() {
+        this.stopped = true;
+        ScheduledFuture<?> next = this.next;
+        if (next != null)
+            next.cancel(false);
+    }
+
+    /**
+     * Stop ticking and print whatever the job wrote since the last tick.
+     *
+     * @return Whether the tailed data is the complete job log, i.e. the final poll succeeded.
+     */
+    boolean finish() {
+        this.stop();
+        synchronized (this) {
+            return !this.discarded && this.poll(true);
+        }
+    }
+
+    /**
+     * Write the tailed spool files the way they appear in the whole job log. Only after {@link #finish()} succeeded.
+     *
+     * @param out Stream to write to.
+     * @throws IOException if the data couldn't be read or written.
+     */
+    synchronized void writeTo(OutputStream out) throws IOException {
+        boolean first = true;
+        for (JESSpoolFile spoolFile : this.files) {
+            SpillableOutputStream content = this.tailed.get(spoolFile.id);
+            if (content != null)
+                content.close();
+            ZFTPConnector.writeSpoolFile(out, content, first);
+            first = false;
+        }
+    }
+
+    /**
+     * Stop ticking and drop the tailed data.
+     */
+    void discard() {
+        this.stop();
+        synchronized (this) {
+            this.discarded = true;
+            this.tailed.values().forEach(SpillableOutputStream::discard);
+            this.tailed.clear();
+        }
+    }
+
+    private void schedule() {
+        if (this.stopped)
+            return;
+        ZOSWaitEngine engine = ZOSWaitEngine.get();
+        this.next = engine.schedule(() -> engine.workers().execute(this::tick), interval);
+    }
+
+    private void tick() {
+        synchronized (this) {
+            if (this.stopped)
+                return;
+            this.poll(false);
+        }
+        this.schedule();
+    }
+
+    /**
+     * List spool files of the job and print new records of those that grew.
+     * Errors are only logged: if the final poll fails, the job log is retrieved as a whole at the end.
+     *
+     * @param wait Whether to wait for a session if the server is at its limit; ticks run on workers and don't.
+     * @return Whether all grown spool files were retrieved.
+     */
+    private boolean poll(boolean wait) {
+        ZFTPSessionPool pool = ZFTPSessionPool.get();
+        ZFTPSessionPool.Session session = null;
+        try {
+            session = wait
+                    ? pool.borrow(this.server, this.port, this.userID, this.password, false)
+                    : pool.tryBorrow(this.server, this.port, this.userID, this.password, false);
+            if (session == null) {
+                logger.fine("Live tail of job [" + this.jobID + "]: no free session, tick skipped");
+                return false;
+            }
+            if (this.FTPActiveMode) {
+                session.client.enterLocalActiveMode();
+            } else {
+                session.client.enterLocalPassiveMode();
+            }
+            FTPFile[] listing = session.client.listFiles(this.jobID);
+            if (listing == null)
+                throw new IOException("Failed to list spool files: " + session.client.getReplyString());
+            List<JESSpoolFile> files = new ArrayList<>();
+            for (FTPFile ftpFile : listing) {
+                if (!(ftpFile instanceof JESEntryParser.SpoolEntry))
+                    continue;
+                JESSpoolFile spoolFile = ((JESEntryParser.SpoolEntry) ftpFile).spoolFile;
+                if (!this.spoolFiles.isEmpty() && !spoolFile.matches(this.spoolFiles))
+                    continue;
+                files.add(spoolFile);
+                if (spoolFile.byteCount > this.listed.getOrDefault(spoolFile.id, 0L))
+                    this.print(session, spoolFile);
+            }
+            this.files = files;
+            pool.release(session);
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Live tail of job [" + this.jobID + "] failed", e);
+            if (session != null)
+                pool.invalidate(session);
+            return false;
+        }
+    }
+
+    /**
+     * Retrieve grown spool file, print the part not printed yet and keep it.
+     *
+     * @param session   Logged-on session.
+     * @param spoolFile Spool file.
+     * @throws IOException if the transfer failed.
+     */
+    private void print(ZFTPSessionPool.Session session, JESSpoolFile spoolFile) throws IOException {
+        InputStream in = session.client.retrieveFileStream(this.jobID + "." + spoolFile.id);
+        if (in == null)
+            throw new IOException("Failed to retrieve spool file " + spoolFile.id + ": " + session.client.getReplyString());
+        SpillableOutputStream content = this.tailed.computeIfAbsent(spoolFile.id, id -> new SpillableOutputStream());
+        // Data received before a failure stays printed and kept, a retry skips it.
+        long skip = this.printed.getOrDefault(spoolFile.id, 0L);
+        long position = 0;
+        try {
+            byte[] buffer = new byte[bufferSize];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                int from = (int) Math.max(0, Math.min(n, skip - position));
+                position += n;
+                if (from == n)
+                    continue;
+                if (this.current == null || this.current.id != spoolFile.id)
+                    this.console.println("---- " + spoolFile + " ----");
+                this.current = spoolFile;
+                this.console.write(buffer, from, n - from);
+                content.write(buffer, from, n - from);
+                this.printed.put(spoolFile.id, position);
+            }
+        } finally {
+            in.close();
+            this.console.flush();
+        }
+        if (!session.client.completePendingCommand())
+            throw new IOException("Failed to retrieve spool file " + spoolFile.id + ": " + session.client.getReplyString());
+        this.listed.put(spoolFile.id, spoolFile.byteCount);
+    }
+}
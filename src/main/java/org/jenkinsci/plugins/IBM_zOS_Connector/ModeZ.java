@@ -0,0 +1,160 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.io.FromNetASCIIOutputStream;
+import org.apache.commons.net.io.ToNetASCIIInputStream;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.InflaterOutputStream;
+
+/**
+ * <h2>ModeZ</h2>
+ * Compressed (<code>MODE Z</code>, deflate) data transfers of a single job.
+ * Server keeps <code>TYPE A</code> (EBCDIC to ASCII translation) while the client is switched to binary,
+ * so the data connection carries raw deflate stream: it's inflated and converted from network ASCII here.
+ * Byte counts on both sides of compression are kept for the job.
+ * If the server refuses <code>MODE Z</code> the session is switched back and transfers go uncompressed.
+ *
+ * @see ZFTPConnector
+ */
+final class ModeZ {
+    /**
+     * Bytes moved over data connections.
+     */
+    private final AtomicLong compressed = new AtomicLong();
+    /**
+     * Bytes before compression / after decompression.
+     */
+    private final AtomicLong uncompressed = new AtomicLong();
+    /**
+     * Whether the server refused <code>MODE Z</code>.
+     */
+    private volatile boolean refused;
+
+    /**
+     * Switch the session to compressed transfers.
+     *
+     * @param client Logged-on session.
+     * @return Whether the next transfer is compressed.
+     * @throws IOException if the server couldn't be talked to.
+     */
+    boolean begin(FTPClient client) throws IOException {
+        if (this.refused)
+            return false;
+        if (client.setFileType(FTP.BINARY_FILE_TYPE)
+                && FTPReply.isPositiveCompletion(client.sendCommand("TYPE", "A"))
+                && FTPReply.isPositiveCompletion(client.sendCommand("MODE", "Z")))
+            return true;
+        this.refused = true;
+        client.setFileType(FTP.ASCII_FILE_TYPE);
+        return false;
+    }
+
+    /**
+     * Switch the session back to uncompressed ASCII transfers, as expected from pooled sessions.
+     *
+     * @param client Session switched by {@link #begin(FTPClient)}.
+     * @throws IOException if the server couldn't be talked to.
+     */
+    void end(FTPClient client) throws IOException {
+        client.sendCommand("MODE", "S");
+        client.setFileType(FTP.ASCII_FILE_TYPE);
+    }
+
+    /**
+     * @param out Stream to write retrieved data to. Not closed.
+     * @return Stream to retrieve compressed data into. Must be closed once the transfer is over.
+     */
+    OutputStream inflate(OutputStream out) {
+        OutputStream data = new CountingOutput(new FromNetASCIIOutputStream(new CloseShieldOutputStream(out)), this.uncompressed);
+        return new CountingOutput(new InflaterOutputStream(data), this.compressed);
+    }
+
+    /**
+     * @param in Data to store.
+     * @return Compressed data.
+     */
+    InputStream deflate(InputStream in) {
+        return new CountingInput(new DeflaterInputStream(new CountingInput(new ToNetASCIIInputStream(in), this.uncompressed)), this.compressed);
+    }
+
+    /**
+     * @return Bytes moved over data connections in compressed transfers.
+     */
+    long getCompressed() {
+        return this.compressed.get();
+    }
+
+    /**
+     * @return Bytes of data in compressed transfers.
+     */
+    long getUncompressed() {
+        return this.uncompressed.get();
+    }
+
+    /**
+     * @return Whether the server refused <code>MODE Z</code>.
+     */
+    boolean isRefused() {
+        return this.refused;
+    }
+
+    /**
+     * <h2>ModeZ.CountingOutput</h2>
+     * Output stream counting bytes written.
+     */
+    private static final class CountingOutput extends FilterOutputStream {
+        private final AtomicLong count;
+
+        CountingOutput(OutputStream out, AtomicLong count) {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count.addAndGet(len);
+        }
+    }
+
+    /**
+     * <h2>ModeZ.CountingInput</h2>
+     * Input stream counting bytes read.
+     */
+    private static final class CountingInput extends FilterInputStream {
+        private final AtomicLong count;
+
+        CountingInput(InputStream in, AtomicLong count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = this.in.read();
+            if (b >= 0)
+                this.count.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = this.in.read(b, off, len);
+            if (n > 0)
+                this.count.addAndGet(n);
+            return n;
+        }
+    }
+}
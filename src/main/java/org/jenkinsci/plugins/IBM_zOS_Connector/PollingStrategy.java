@@ -0,0 +1,125 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <h2>PollingStrategy</h2>
+ * How often JES is asked about a job: starts fast and backs off exponentially with jitter up to a ceiling.
+ * Short jobs are noticed quickly, long ones don't produce hundreds of useless listings.
+ * Predictive strategy also uses past durations of the job (see {@link JobDurationStatistics}):
+ * it sleeps until shortly before the expected end and then polls tightly around it.
+ *
+ * @see JESMonitor
+ */
+final class PollingStrategy implements Serializable {
+    private static final long serialVersionUID = 1L;
+    /**
+     * Default first poll delay in milliseconds.
+     */
+    static final int DEFAULT_INITIAL_INTERVAL = 500;
+    /**
+     * Default poll delay ceiling in seconds.
+     */
+    static final int DEFAULT_MAX_INTERVAL = 30;
+    /**
+     * Default strategy.
+     */
+    static final PollingStrategy DEFAULT = new PollingStrategy(DEFAULT_INITIAL_INTERVAL, DEFAULT_MAX_INTERVAL);
+    /**
+     * Delay growth per poll.
+     */
+    private static final double multiplier = 2.0;
+    /**
+     * Relative jitter applied to each delay, so that jobs submitted together don't poll in lockstep.
+     */
+    private static final double jitter = 0.2;
+    /**
+     * Poll delay near the predicted job end in milliseconds.
+     */
+    private static final long tightInterval = 1000;
+
+    /**
+     * First poll delay in milliseconds.
+     */
+    private final long initialInterval;
+    /**
+     * Poll delay ceiling in milliseconds.
+     */
+    private final long maxInterval;
+    /**
+     * Whether past job durations are used to predict its end.
+     */
+    private final boolean predictive;
+
+    /**
+     * Constructor. Non-positive values are replaced with defaults.
+     *
+     * @param initialInterval First poll delay in milliseconds.
+     * @param maxInterval     Poll delay ceiling in seconds.
+     */
+    PollingStrategy(int initialInterval, int maxInterval) {
+        this(initialInterval, maxInterval, false);
+    }
+
+    /**
+     * Constructor. Non-positive values are replaced with defaults.
+     *
+     * @param initialInterval First poll delay in milliseconds.
+     * @param maxInterval     Poll delay ceiling in seconds.
+     * @param predictive      Whether past job durations are used to predict its end.
+     */
+    PollingStrategy(int initialInterval, int maxInterval, boolean predictive) {
+        this.initialInterval = initialInterval > 0 ? initialInterval : DEFAULT_INITIAL_INTERVAL;
+        this.maxInterval = Math.max(this.initialInterval, (maxInterval > 0 ? maxInterval : DEFAULT_MAX_INTERVAL) * 1000L);
+        this.predictive = predictive;
+    }
+
+    /**
+     * @return Whether past job durations are used to predict its end.
+     */
+    boolean isPredictive() {
+        return this.predictive;
+    }
+
+    /**
+     * @param polls Number of polls already performed for the job.
+     * @return Delay before the next poll in milliseconds.
+     */
+    long nextDelay(int polls) {
+        double delay = this.initialInterval * Math.pow(multiplier, Math.min(polls, 30));
+        return jitter(Math.min(delay, this.maxInterval));
+    }
+
+    /**
+     * Delay around predicted job end: sleep until the prediction window opens,
+     * poll tightly inside it and back off as usual once the job overran it.
+     *
+     * @param polls    Number of polls already performed after the window closed.
+     * @param untilEnd Milliseconds until the predicted end (negative if it has passed).
+     * @param spread   Half width of the prediction window in milliseconds.
+     * @return Delay before the next poll in milliseconds.
+     */
+    long nextDelay(int polls, long untilEnd, long spread) {
+        spread = Math.max(spread, tightInterval);
+        if (untilEnd > spread)
+            return untilEnd - spread;
+        if (untilEnd > -spread)
+            return jitter(Math.min(tightInterval, untilEnd + spread));
+        return this.nextDelay(polls);
+    }
+
+    /**
+     * @param delay Delay in milliseconds.
+     * @return Delay with random jitter applied.
+     */
+    private static long jitter(double delay) {
+        delay *= 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return Math.max(1, Math.round(delay));
+    }
+
+    @Override
+    public String toString() {
+        return this.initialInterval + "ms.." + (this.maxInterval / 1000) + "s" + (this.predictive ? ", predictive" : "");
+    }
+}
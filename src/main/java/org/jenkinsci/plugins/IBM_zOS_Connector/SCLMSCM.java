@@ -20,6 +20,7 @@ import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 import javax.annotation.Nonnull;
@@ -57,6 +58,14 @@ public class SCLMSCM extends SCM {
      * FTP transfer mode
      */
     private boolean FTPActiveMode;
+    /**
+     * First JES poll delay in milliseconds.
+     */
+    private int initialPollInterval = PollingStrategy.DEFAULT_INITIAL_INTERVAL;
+    /**
+     * JES poll delay ceiling in seconds.
+     */
+    private int maxPollInterval = PollingStrategy.DEFAULT_MAX_INTERVAL;
 
     // SCLM project information (project, alternate, group, types to monitor)
     /**
@@ -250,6 +259,40 @@ public class SCLMSCM extends SCM {
         return this.FTPActiveMode;
     }
 
+    /**
+     * Get initialPollInterval.
+     *
+     * @return <b><code>initialPollInterval</code></b>
+     */
+    public int getInitialPollInterval() {
+        return this.initialPollInterval;
+    }
+
+    /**
+     * @param initialPollInterval First JES poll delay in milliseconds.
+     */
+    @DataBoundSetter
+    public void setInitialPollInterval(int initialPollInterval) {
+        this.initialPollInterval = initialPollInterval;
+    }
+
+    /**
+     * Get maxPollInterval.
+     *
+     * @return <b><code>maxPollInterval</code></b>
+     */
+    public int getMaxPollInterval() {
+        return this.maxPollInterval;
+    }
+
+    /**
+     * @param maxPollInterval JES poll delay ceiling in seconds.
+     */
+    @DataBoundSetter
+    public void setMaxPollInterval(int maxPollInterval) {
+        this.maxPollInterval = maxPollInterval;
+    }
+
     /**
      * Get SCLM Project Name.
      *
@@ -322,6 +365,7 @@ public class SCLMSCM extends SCM {
                 this.server,
                 this.port,
                 user, password, this.JESINTERFACELEVEL1, logPrefix, this.FTPActiveMode);
+        zFTPConnector.setPollingStrategy(new PollingStrategy(this.initialPollInterval, this.maxPollInterval));
 
         // Fetch revision.
         return new SCLMSCMRevisionState(this.project, this.alternate, this.group, this.types, this.JobHeader + "\n" + this.JobStep, zFTPConnector, baseline);
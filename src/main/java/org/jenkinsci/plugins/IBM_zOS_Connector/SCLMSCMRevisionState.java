@@ -3,11 +3,13 @@ package org.jenkinsci.plugins.IBM_zOS_Connector;
 import hudson.scm.EditType;
 import hudson.scm.SCMRevisionState;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -31,6 +33,10 @@ public class SCLMSCMRevisionState extends SCMRevisionState {
      * DBUTIL pattern. User for DBUTIL report parsing.
      */
     private final static Pattern DBUTILPattern = Pattern.compile(".*?(\\S+)\\s*\\.(\\S+)\\s*\\((\\S+)\\s*\\)\\s+<(\\d{4}/\\d{2}/\\d{2} \\d{2}:\\d{2}:\\d{2})>\\s+(\\S+)\\s+(\\S+).*");
+    /**
+     * End of spool file in the job log.
+     */
+    private final static String spoolFileSeparator = "!! END OF JES SPOOL FILE !!";
 
     /**
      * List of current files under interest.
@@ -75,23 +81,20 @@ public class SCLMSCMRevisionState extends SCMRevisionState {
         // Create temp variables.
         LinkedList<SCLMFileState> remote = new LinkedList<>();
         InputStream inputStream = new ByteArrayInputStream(actualJob.getBytes(Charset.defaultCharset()));
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        SpillableOutputStream outputStream = new SpillableOutputStream();
 
         // Submit the job for the DBUTIL report and build remote file list.
-        if (ZFTPConnector.submit(inputStream, true, 0, outputStream, true)) {
-            String out = "";
-            try {
-                out = outputStream.toString("UTF-8");
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
-            }
-            String[] outParts = out.split("!! END OF JES SPOOL FILE !!(\\r\\n|\\r|\\n)");
-            for (String spool : outParts) {
-                if (this.isChangeLog(spool)) {
-                    remote = this.constructChanges(spool, project, alternate, group);
-                    break;
-                }
+        try {
+            if (ZFTPConnector.submit(inputStream, true, 0, outputStream, true)) {
+                outputStream.close();
+                List<String> report = this.findChangeLog(outputStream);
+                if (report != null)
+                    remote = this.constructChanges(report, project, alternate, group);
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            outputStream.discard();
         }
 
         this.files = new LinkedList<>();
@@ -179,41 +182,62 @@ public class SCLMSCMRevisionState extends SCMRevisionState {
     }
 
     /**
-     * Check whether a spool file is DBUTIL report.
+     * Find DBUTIL report among spool files of the job log, reading it line by line.
      *
-     * @param s Spool file.
-     * @return Whether input is DBUTIL report.
+     * @param jobLog Job log.
+     * @return Lines of the first spool file which is DBUTIL report, <code>null</code> if there is none.
+     * @throws IOException if the job log couldn't be read.
      */
-    private boolean isChangeLog(String s) {
-        // Check all lines
-        for (String g : s.split("\\r\\n|\\r|\\n")) {
-            Matcher matcher = SCLMSCMRevisionState.DBUTILPattern.matcher(g);
-            // Only not empty lines
-            if (!g.matches("\\s*")) {
-                // If line not matches it isn't DBUTIL report.
-                if (!matcher.matches()) {
-                    return false;
+    private List<String> findChangeLog(SpillableOutputStream jobLog) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(jobLog.openInputStream(), StandardCharsets.UTF_8))) {
+            List<String> spool = new ArrayList<>();
+            boolean changeLog = true;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                boolean end = line.endsWith(spoolFileSeparator);
+                if (end)
+                    line = line.substring(0, line.length() - spoolFileSeparator.length());
+                // Lines of another spool file aren't kept.
+                if (changeLog && !this.isChangeLogLine(line)) {
+                    changeLog = false;
+                    spool.clear();
+                }
+                if (changeLog)
+                    spool.add(line);
+                if (end) {
+                    if (changeLog)
+                        return spool;
+                    changeLog = true;
                 }
             }
+            return changeLog ? spool : null;
         }
-        return true;
+    }
+
+    /**
+     * Check whether a spool file line may be a part of DBUTIL report.
+     *
+     * @param g Spool file line.
+     * @return Whether the line is empty or matches DBUTIL report format.
+     */
+    private boolean isChangeLogLine(String g) {
+        return g.matches("\\s*") || SCLMSCMRevisionState.DBUTILPattern.matcher(g).matches();
     }
 
 
     /**
      * Construct SCLM file list from DBUTIL report.
      *
-     * @param log       DBUTIL report.
+     * @param log       DBUTIL report lines.
      * @param project   SCLM Project Name.
      * @param alternate SCLM Alternate Project Definition.
      * @param group     SCLM Group.
      * @return SCLM file list.
      */
-    private LinkedList<SCLMFileState> constructChanges(String log, String project, String alternate, String group) {
+    private LinkedList<SCLMFileState> constructChanges(List<String> log, String project, String alternate, String group) {
         // Result.
         LinkedList<SCLMFileState> res = new LinkedList<>();
 
-        for (String g : log.split("\\r\\n|\\r|\\n")) {
+        for (String g : log) {
             Matcher matcher = SCLMSCMRevisionState.DBUTILPattern.matcher(g);
             // Only non-empty lines.
             if (!g.matches("\\s*")) {
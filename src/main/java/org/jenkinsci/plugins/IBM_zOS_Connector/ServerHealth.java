@@ -0,0 +1,190 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <h2>ServerHealth</h2>
+ * Circuit breaker of one FTP server. After <code>ServerHealth.failureThreshold</code> failed connects in a row
+ * (3 by default) the circuit opens: sessions to the server are refused at once with {@link CircuitOpenException}
+ * instead of every build going through its own connect timeout.
+ * While open, the server is probed every <code>ServerHealth.probeInterval</code> seconds (30 by default)
+ * with a bare connect waiting for the greeting; the first answer closes the circuit.
+ *
+ * @see ZFTPSessionPool
+ */
+final class ServerHealth {
+    /**
+     * Logger.
+     */
+    private static final Logger logger = Logger.getLogger(ServerHealth.class.getName());
+    /**
+     * Failed connects in a row opening the circuit.
+     */
+    private static final int failureThreshold = Integer.getInteger(ServerHealth.class.getName() + ".failureThreshold", 3);
+    /**
+     * Delay between probes of an open circuit in milliseconds.
+     */
+    private static final long probeInterval = Long.getLong(ServerHealth.class.getName() + ".probeInterval", 30) * 1000;
+
+    /**
+     * Server and port.
+     */
+    final String name;
+    private final String server;
+    private final int port;
+    /**
+     * Whether the circuit is open.
+     */
+    private boolean open;
+    /**
+     * Failed connects in a row.
+     */
+    private int failures;
+    /**
+     * Time the circuit opened.
+     */
+    private long openedAt;
+    /**
+     * Times the circuit opened since start.
+     */
+    private long trips;
+    /**
+     * Sessions refused while open since start.
+     */
+    private long rejected;
+    /**
+     * Message of the last failure, <code>null</code> if none.
+     */
+    private String lastError;
+
+    ServerHealth(String name, String server, int port) {
+        this.name = name;
+        this.server = server;
+        this.port = port;
+    }
+
+    /**
+     * @throws CircuitOpenException if the server is known to be down.
+     */
+    synchronized void check() throws CircuitOpenException {
+        if (!this.open)
+            return;
+        this.rejected++;
+        throw new CircuitOpenException("FTP server " + this.name + " is unavailable since "
+                + (System.currentTimeMillis() - this.openedAt) / 1000 + " second(s) (" + this.lastError + "), failing fast until it answers again");
+    }
+
+    /**
+     * Record connect which got the server greeting.
+     */
+    synchronized void success() {
+        this.failures = 0;
+        if (this.open) {
+            this.open = false;
+            logger.info("FTP: server " + this.name + " answers again after "
+                    + (System.currentTimeMillis() - this.openedAt) / 1000 + " second(s), circuit closed");
+        }
+    }
+
+    /**
+     * Record failed connect, opening the circuit after too many in a row.
+     *
+     * @param e Failure.
+     */
+    void failure(IOException e) {
+        synchronized (this) {
+            this.failures++;
+            this.lastError = e.getMessage();
+            if (this.open || this.failures < failureThreshold)
+                return;
+            this.open = true;
+            this.openedAt = System.currentTimeMillis();
+            this.trips++;
+        }
+        logger.warning("FTP: " + failureThreshold + " failed connects in a row to " + this.name + " (" + e.getMessage()
+                + "), circuit opened");
+        this.scheduleProbe();
+    }
+
+    private void scheduleProbe() {
+        ZOSWaitEngine engine = ZOSWaitEngine.get();
+        engine.schedule(() -> engine.workers().execute(this::probe), probeInterval);
+    }
+
+    /**
+     * Connect without logon and wait for the greeting (half-open circuit). Reschedules itself until the server answers.
+     */
+    void probe() {
+        FTPClient client = new FTPClient();
+        ZFTPSessionPool.configure(client);
+        try {
+            client.connect(this.server, this.port);
+            if (!FTPReply.isPositiveCompletion(client.getReplyCode()))
+                throw new IOException("FTP server refused connection: " + client.getReplyString());
+            this.success();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "FTP: probe of " + this.name + " failed", e);
+            synchronized (this) {
+                this.lastError = e.getMessage();
+            }
+            this.scheduleProbe();
+        } finally {
+            try {
+                client.disconnect();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * @return Whether the circuit is open.
+     */
+    synchronized boolean isOpen() {
+        return this.open;
+    }
+
+    /**
+     * @return Failed connects in a row.
+     */
+    synchronized int getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * @return Times the circuit opened since start.
+     */
+    synchronized long getTrips() {
+        return this.trips;
+    }
+
+    /**
+     * @return Sessions refused while open since start.
+     */
+    synchronized long getRejected() {
+        return this.rejected;
+    }
+
+    /**
+     * @return Message of the last failure, <code>null</code> if none.
+     */
+    synchronized String getLastError() {
+        return this.lastError;
+    }
+
+    /**
+     * <h2>ServerHealth.CircuitOpenException</h2>
+     * Session refused without connecting as the server is known to be down.
+     */
+    static final class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+}
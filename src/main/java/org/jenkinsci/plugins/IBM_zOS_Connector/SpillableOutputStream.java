@@ -0,0 +1,267 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h2>SpillableOutputStream</h2>
+ * Buffer for job output which has to be read back (spool files retrieved ahead of their turn, DBUTIL report).
+ * Small outputs stay in memory; once <code>SpillableOutputStream.threshold</code> bytes (1 MiB by default) are exceeded
+ * the data moves to a temporary file and further writes go there, so heap use doesn't depend on the output size.
+ * Data is read back through a file channel. Counts of spilled buffers are kept for the statistics page.
+ *
+ * @see ZOSConnectorStatistics
+ */
+final class SpillableOutputStream extends OutputStream {
+    /**
+     * Bytes kept in memory before spilling to disk.
+     */
+    private static final int defaultThreshold = Integer.getInteger(SpillableOutputStream.class.getName() + ".threshold", 1024 * 1024);
+    /**
+     * Size of the buffer in front of the spill file.
+     */
+    private static final int bufferSize = 64 * 1024;
+
+    /**
+     * Buffers spilled to disk since start.
+     */
+    private static final AtomicLong spills = new AtomicLong();
+    /**
+     * Bytes written to spill files since start.
+     */
+    private static final AtomicLong spilledBytes = new AtomicLong();
+    /**
+     * Spill files currently on disk.
+     */
+    private static final AtomicInteger spillFiles = new AtomicInteger();
+
+    /**
+     * Bytes kept in memory before spilling to disk.
+     */
+    private final int threshold;
+    /**
+     * In-memory data, <code>null</code> once spilled.
+     */
+    private Memory memory = new Memory();
+    /**
+     * Spill file, <code>null</code> until spilled.
+     */
+    private Path file;
+    /**
+     * Stream into the spill file.
+     */
+    private OutputStream fileStream;
+    /**
+     * Bytes written.
+     */
+    private long size;
+    /**
+     * Last byte written, <code>-1</code> if none.
+     */
+    private int last = -1;
+    /**
+     * Whether the data was dropped.
+     */
+    private boolean discarded;
+
+    /**
+     * Buffer spilling after <code>SpillableOutputStream.threshold</code> bytes.
+     */
+    SpillableOutputStream() {
+        this(defaultThreshold);
+    }
+
+    /**
+     * @param threshold Bytes kept in memory before spilling to disk.
+     */
+    SpillableOutputStream(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.target(1).write(b);
+        this.written(1);
+        this.last = b & 0xff;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return;
+        this.target(len).write(b, off, len);
+        this.written(len);
+        this.last = b[off + len - 1] & 0xff;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.fileStream != null)
+            this.fileStream.flush();
+    }
+
+    /**
+     * Finish writing. Data stays available for reading until {@link #discard()}.
+     *
+     * @throws IOException if the spill file couldn't be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.fileStream != null) {
+            this.fileStream.close();
+            this.fileStream = null;
+        }
+    }
+
+    /**
+     * @param len Bytes about to be written.
+     * @return Stream to write them to, spilling the memory buffer first if it would grow over the threshold.
+     * @throws IOException if the spill file couldn't be created.
+     */
+    private OutputStream target(int len) throws IOException {
+        this.checkNotDiscarded();
+        if (this.memory == null) {
+            if (this.fileStream == null)
+                throw new IOException("Buffer is closed");
+            return this.fileStream;
+        }
+        if (this.size + len <= this.threshold)
+            return this.memory;
+        this.file = Files.createTempFile("zos-connector", ".spill");
+        spillFiles.incrementAndGet();
+        spills.incrementAndGet();
+        this.fileStream = new BufferedOutputStream(Files.newOutputStream(this.file), bufferSize);
+        this.memory.writeTo(this.fileStream);
+        spilledBytes.addAndGet(this.size);
+        this.memory = null;
+        return this.fileStream;
+    }
+
+    private void written(int len) {
+        this.size += len;
+        if (this.memory == null)
+            spilledBytes.addAndGet(len);
+    }
+
+    /**
+     * @return Bytes written.
+     */
+    long size() {
+        return this.size;
+    }
+
+    /**
+     * @return Whether the data went to disk.
+     */
+    boolean isSpilled() {
+        return this.file != null;
+    }
+
+    /**
+     * @return Whether the last line is terminated.
+     */
+    boolean endsWithNewline() {
+        return this.last == '\n';
+    }
+
+    /**
+     * Copy the data to another stream. The buffer must be closed.
+     *
+     * @param out Stream to copy to.
+     * @throws IOException if the data couldn't be read or written, or was discarded.
+     */
+    void writeTo(OutputStream out) throws IOException {
+        this.checkNotDiscarded();
+        if (this.memory != null) {
+            this.memory.writeTo(out);
+        } else {
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+                // transferTo may move fewer bytes than asked for.
+                WritableByteChannel target = Channels.newChannel(out);
+                long size = channel.size();
+                for (long position = 0; position < size; ) {
+                    position += channel.transferTo(position, size - position, target);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the data back. The buffer must be closed.
+     *
+     * @return Stream of the data.
+     * @throws IOException if the spill file couldn't be opened or the data was discarded.
+     */
+    InputStream openInputStream() throws IOException {
+        this.checkNotDiscarded();
+        if (this.memory != null)
+            return new ByteArrayInputStream(this.memory.buffer(), 0, this.memory.size());
+        return new BufferedInputStream(Channels.newInputStream(FileChannel.open(this.file, StandardOpenOption.READ)), bufferSize);
+    }
+
+    /**
+     * Drop the data and delete the spill file, ignoring errors.
+     */
+    void discard() {
+        try {
+            this.close();
+        } catch (IOException ignored) {
+        }
+        this.discarded = true;
+        this.memory = null;
+        if (this.file != null) {
+            try {
+                Files.deleteIfExists(this.file);
+            } catch (IOException ignored) {
+            }
+            this.file = null;
+            spillFiles.decrementAndGet();
+        }
+    }
+
+    /**
+     * @throws IOException if the data was dropped by {@link #discard()}.
+     */
+    private void checkNotDiscarded() throws IOException {
+        if (this.discarded)
+            throw new IOException("Buffer was discarded, its data is gone");
+    }
+
+    /**
+     * @return Buffers spilled to disk since start.
+     */
+    static long getSpills() {
+        return spills.get();
+    }
+
+    /**
+     * @return Bytes written to spill files since start.
+     */
+    static long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    /**
+     * @return Spill files currently on disk.
+     */
+    static int getSpillFiles() {
+        return spillFiles.get();
+    }
+
+    /**
+     * <h2>SpillableOutputStream.Memory</h2>
+     * In-memory part with access to its array, so reading it back doesn't copy.
+     */
+    private static final class Memory extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return this.buf;
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package org.jenkinsci.plugins.IBM_zOS_Connector;
 
 import hudson.model.TaskListener;
-import org.apache.commons.net.PrintCommandListener;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPConnectionClosedException;
 import org.apache.commons.net.ftp.FTPFile;
-import org.apache.commons.net.ftp.FTPReply;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -26,9 +35,17 @@ import java.util.regex.Pattern;
 class ZFTPConnector {
     // Server info.
     /**
-     * Will ask LPAR once in 10 seconds.
+     * Will retry log retrieval once in 10 seconds.
      */
     private static final long waitInterval = 10 * 1000;
+    /**
+     * Jobs with fewer spool bytes are retrieved with single <code>RETR</code> even in parallel retrieval mode.
+     */
+    private static final long parallelRetrievalThreshold = Long.getLong(ZFTPConnector.class.getName() + ".parallelRetrievalThreshold", 1024 * 1024);
+    /**
+     * Line JES puts between spool files of the whole job log.
+     */
+    private static final String spoolFileSeparator = " !! END OF JES SPOOL FILE !!";
     /**
      * Pattern for search of jobName
      */
@@ -71,6 +88,18 @@ class ZFTPConnector {
      * Whether job log was successfully captured
      */
     private boolean jobLogCaptured;
+    /**
+     * HASP395 scan of the captured job log (<code>JESINTERFACELEVEL=1</code> only).
+     */
+    private HASP395Scanner jobLogScan;
+    /**
+     * Bytes of the whole job log already written to the output by previous attempts.
+     */
+    private long jobLogReceived;
+    /**
+     * Spool files already written to the output by previous attempts.
+     */
+    private final Set<Integer> spoolFilesReceived = new HashSet<>();
 
     // Work elements.
     /**
@@ -87,6 +116,14 @@ class ZFTPConnector {
      * FTPClient from <i>Apache Commons-Net</i>. Used for FTP communication.
      */
     private FTPClient FTPClient;
+    /**
+     * Pooled session holding <b><code>FTPClient</code></b>.
+     */
+    private ZFTPSessionPool.Session session;
+    /**
+     * Session being opened ahead of the first use, <code>null</code> if none.
+     */
+    private CompletableFuture<ZFTPSessionPool.Session> warmUp;
     /**
      * Log prefix (default: "ZFTPConnector")
      */
@@ -99,6 +136,62 @@ class ZFTPConnector {
      * FTP transfer mode
      */
     private final boolean FTPActiveMode;
+    /**
+     * Keep single control connection for the whole submission.
+     */
+    private boolean reuseSession;
+    /**
+     * Number of times the control connection was re-established for the current job.
+     */
+    private int reconnects;
+    /**
+     * Number of sessions taken from the pool for the current job.
+     */
+    private int sessions;
+    /**
+     * Whether the last logon was refused because the server is known to be down.
+     */
+    private boolean circuitOpen;
+    /**
+     * How often JES is asked about the job.
+     */
+    private PollingStrategy pollingStrategy;
+    /**
+     * Current JES monitor registration of the job.
+     */
+    private volatile JESMonitor.Watch watch;
+    /**
+     * Upper case DD or step names of spool files to retrieve, empty for the whole job log.
+     */
+    private Set<String> spoolFiles = new HashSet<>();
+    /**
+     * Whether the whole job log is retrieved as separate spool files in parallel.
+     */
+    private boolean parallelRetrieval;
+    /**
+     * Compressed transfers of the job, <code>null</code> if not requested.
+     */
+    private ModeZ modeZ;
+    /**
+     * Whether spool files of the running job are tailed into the build console.
+     */
+    private boolean liveTail;
+    /**
+     * Live tail of the current job, <code>null</code> if not tailed.
+     */
+    private volatile JobLogTail tail;
+    /**
+     * Finished live tail holding the whole job log of the current job, <code>null</code> if it has to be retrieved.
+     */
+    private JobLogTail tailed;
+    /**
+     * Whether waiting for the job was cancelled.
+     */
+    private volatile boolean cancelled;
+    /**
+     * Delay before the next job log retrieval attempt, <code>null</code> if none is pending.
+     */
+    private volatile CompletableFuture<Void> retry;
 
     /**
      * Basic constructor with minimal parameters required.
@@ -128,137 +221,225 @@ class ZFTPConnector {
         this.log("Created ZFTPConnector");
 
         this.listener = null;
+        this.reuseSession = false;
+        this.pollingStrategy = PollingStrategy.DEFAULT;
     }
 
     /**
-     * Try to connect to the <b><code>server</code></b> using the parameters passed to the constructor.
-     *
-     * @return Whether the connection was established using the parameters passed to the constructor.
-     * @see ZFTPConnector#ZFTPConnector
+     * @param listener Listener to duplicate the log to.
      */
-    private boolean connect() {
-        // 1. Disconnect and ignore error.
-        try {
-            this.FTPClient.disconnect();
-        } catch (IOException ignored) {
+    void setListener(TaskListener listener) {
+        this.listener = listener;
+    }
 
-        }
-        // Perform the connection.
-        try {
-            int reply; // Temp value to contain server response.
-
-            // Try to connect.
-            this.FTPClient.connect(this.server, this.port);
-
-            // After connection attempt, check the reply code to verify success.
-            reply = this.FTPClient.getReplyCode();
-            if (!FTPReply.isPositiveCompletion(reply)) {
-                // Bad reply code.
-                this.FTPClient.disconnect(); // Disconnect from LPAR.
-                this.err("FTP server refused connection."); // Print error.
-                return false; // Finish with failure.
-            }
-            this.log("FTP: connected to " + server + ":" + port);
-        }
-        // IOException handling
-        catch (IOException e) {
-            // Close the connection if it's still open.
-            if (this.FTPClient.isConnected()) {
-                try {
-                    this.FTPClient.disconnect();
-                } catch (IOException f) {
-                    // Do nothing
-                }
+    /**
+     * Retrieve only the spool files with given DD, step or procedure step names instead of the whole job log.
+     * Works with <code>JESINTERFACELEVEL=2</code> only.
+     *
+     * @param names DD, step or procedure step names, empty for the whole job log.
+     */
+    void setSpoolFiles(Collection<String> names) {
+        this.spoolFiles = new HashSet<>();
+        if (names != null) {
+            for (String name : names) {
+                if (!name.trim().isEmpty())
+                    this.spoolFiles.add(name.trim().toUpperCase());
             }
-            this.err("Could not connect to server.");
-            e.printStackTrace();
-            return false;
         }
-        // Finally, return with success.
-        return true;
     }
 
     /**
-     * Try to logon to the <b><code>server</code></b> using the parameters passed to the constructor.
-     * Also, <code>site filetype=jes jesjobname=* jesowner=*</code> command is invoked.
+     * Retrieve the whole job log as separate spool files over several pooled sessions in parallel.
+     * Works with <code>JESINTERFACELEVEL=2</code> only and for jobs above
+     * <code>ZFTPConnector.parallelRetrievalThreshold</code> bytes (1 MiB by default).
+     *
+     * @param parallelRetrieval Whether to retrieve spool files in parallel.
+     */
+    void setParallelRetrieval(boolean parallelRetrieval) {
+        this.parallelRetrieval = parallelRetrieval;
+    }
+
+    /**
+     * Transfer JCL and job log compressed (<code>MODE Z</code>) if the server supports it.
+     *
+     * @param compression Whether to try compressed transfers.
+     */
+    void setCompression(boolean compression) {
+        this.modeZ = compression ? new ModeZ() : null;
+    }
+
+    /**
+     * Print new records of the job spool files to the build console while the job runs.
+     * Works with <code>JESINTERFACELEVEL=2</code> and a listener only.
+     *
+     * @param liveTail Whether to tail the job.
+     */
+    void setLiveTail(boolean liveTail) {
+        this.liveTail = liveTail;
+    }
+
+    /**
+     * @return Whether the job log reaches the build console via live tail.
+     */
+    boolean tailsJobLog() {
+        return this.liveTail && !this.JESINTERFACELEVEL1 && this.listener != null;
+    }
+
+    /**
+     * @param pollingStrategy How often JES is asked about the job while waiting for it.
+     */
+    void setPollingStrategy(PollingStrategy pollingStrategy) {
+        this.pollingStrategy = pollingStrategy;
+    }
+
+    /**
+     * Keep one authenticated control connection for the life of a submission: it's held from submission
+     * while the job runs till its log is retrieved, status checks of failed retrievals included.
+     * Connection is re-established only if the server closes it or fails to answer NOOP.
+     *
+     * @param reuseSession Whether to reuse the control connection.
+     */
+    void setReuseSession(boolean reuseSession) {
+        this.reuseSession = reuseSession;
+    }
+
+    /**
+     * Obtain logged-on session to the <b><code>server</code></b> using the parameters passed to the constructor.
+     * Previously held session is returned to the pool first, so the pool either hands it back
+     * after NOOP validation or opens a fresh one with <code>site filetype=jes jesjobname=* jesstatus=ALL</code> applied.
      *
      * @return Whether the credentials supplied are valid and the connection was established.
      * @see ZFTPConnector#ZFTPConnector
-     * @see ZFTPConnector#connect()
+     * @see ZFTPSessionPool#borrow(String, int, String, String, boolean)
      */
     private boolean logon() {
-        // 1. log out, ignore error
-        try {
-            this.FTPClient.logout();
-        } catch (IOException ignored) {
+        if (this.reuseSession) {
+            if (this.session != null)
+                return true;
+        } else {
+            this.disconnect();
         }
-
-        // Check whether we are already connected. If not, try to reconnect.
-        if (!this.connect())
-            return false; // Couldn't connect to the server. Can't check the credentials.
-
-        // Perform the login process.
         try {
-            int reply; // Temp value for server reply code.
+            this.session = this.takeWarmUp();
+            if (this.session == null)
+                this.session = ZFTPSessionPool.get().borrow(this.server, this.port, this.userID, this.password, this.JESINTERFACELEVEL1);
+        } catch (IOException e) {
+            this.circuitOpen = e instanceof ServerHealth.CircuitOpenException;
+            this.err(e.getMessage());
+            return false;
+        }
+        this.circuitOpen = false;
+        this.sessions++;
+        this.FTPClient = this.session.client;
+        // Data connection mode is local to the client, so pooled session may come in any of them.
+        if (this.FTPActiveMode) {
+            this.FTPClient.enterLocalActiveMode();
+        } else {
+            this.FTPClient.enterLocalPassiveMode();
+        }
+        return true;
+    }
 
-            // Try to login.
-            if (!this.FTPClient.login(this.userID, this.password)) {
-                // If couldn't login, we should logout and return failure.
-                this.FTPClient.logout();
-                return false;
+    /**
+     * Start obtaining logged-on session in the background (connect, logon, <code>SITE</code>),
+     * so it overlaps with whatever the caller does before submitting, e.g. reading and expanding JCL.
+     * Runs on {@link ZOSWaitEngine#transfers()}: submission waits for it on a job worker.
+     * If the server is at its session limit there's no warm-up: the session is waited for on submission instead,
+     * so transfer threads never queue for sessions.
+     */
+    void warmUp() {
+        if (this.session != null || this.warmUp != null)
+            return;
+        this.warmUp = CompletableFuture.supplyAsync(() -> {
+            try {
+                return ZFTPSessionPool.get().tryBorrow(this.server, this.port, this.userID, this.password, this.JESINTERFACELEVEL1);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+        }, ZOSWaitEngine.get().transfers());
+    }
 
-            // Try to set filetype, jesjobname and jesstatus.
-            this.FTPClient.site("filetype=jes jesjobname=* jesstatus=ALL");
-            // Check reply.
-            reply = this.FTPClient.getReplyCode();
-            if (!FTPReply.isPositiveCompletion(reply)) {
-                this.FTPClient.disconnect();
-                this.err("FTP server refused to change FileType and JESJobName.");
-                return false;
-            }
-        } catch (IOException e) {
-            if (this.FTPClient.isConnected()) {
-                try {
-                    this.FTPClient.disconnect();
-                } catch (IOException f) {
-                    // do nothing
-                }
-            }
-            this.err("Could not logon to server.");
-            e.printStackTrace();
-            return false;
+    /**
+     * @return Session obtained by {@link #warmUp()}, <code>null</code> if there was none.
+     * @throws IOException if connection or logon failed.
+     */
+    private ZFTPSessionPool.Session takeWarmUp() throws IOException {
+        CompletableFuture<ZFTPSessionPool.Session> warmUp = this.warmUp;
+        this.warmUp = null;
+        if (warmUp == null)
+            return null;
+        try {
+            return warmUp.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            throw new IOException(e.getCause());
         }
+    }
 
-        // If go here, everything went fine.
-        return true;
+    /**
+     * Return any session held or being obtained to the pool, e.g. when the job won't be submitted after all.
+     */
+    void close() {
+        CompletableFuture<ZFTPSessionPool.Session> warmUp = this.warmUp;
+        this.warmUp = null;
+        if (warmUp != null)
+            warmUp.thenAccept(ZFTPSessionPool.get()::release);
+        this.disconnect();
     }
 
     /**
-     * Try logging out of the FTP server.
+     * Return the session to the pool.
      * This will not fail at all - instead if the next relogon attempt fails you will see something more accurate.
      */
     private void disconnect() {
-        if (this.FTPClient == null)
+        ZFTPSessionPool.get().release(this.session);
+        this.session = null;
+        this.FTPClient = null;
+    }
+
+    /**
+     * Close the session instead of returning it to the pool, as it can't be trusted anymore.
+     */
+    private void dropSession() {
+        if (this.session == null)
             return;
-        try {
-            this.FTPClient.logout();
-        } catch (IOException ignored) {
-        } finally {
-            try {
-                this.FTPClient.disconnect();
-            } catch (IOException ignored) {
-            }
+        ZFTPSessionPool.get().invalidate(this.session);
+        this.session = null;
+        this.FTPClient = null;
+        if (this.reuseSession) {
+            this.reconnects++;
+            this.log("FTP: control connection lost, will reconnect (" + this.reconnects + " so far)");
         }
     }
 
+    /**
+     * Decide whether the session survived an I/O error.
+     * In session reuse mode only closed connection is fatal - anything else is checked by NOOP on the next tick.
+     *
+     * @param e Error caught.
+     */
+    private void onIOException(IOException e) {
+        if (!this.reuseSession || e instanceof FTPConnectionClosedException)
+            this.dropSession();
+    }
+
+    /**
+     * Check reused session with NOOP and drop it if server doesn't answer.
+     */
+    private void validateSession() {
+        if (this.reuseSession && this.session != null && !this.session.validate())
+            this.dropSession();
+    }
+
     boolean submit(InputStream inputStream, boolean wait, int waitTime, OutputStream outputStream, boolean deleteLogFromSpool, TaskListener taskListener) {
-        this.listener = taskListener;
+        this.setListener(taskListener);
         return this.submit(inputStream, wait, waitTime, outputStream, deleteLogFromSpool);
     }
 
     /**
-     * Submit job for execution.
+     * Submit job for execution and wait for it (if requested) on {@link ZOSWaitEngine}.
+     * Blocks the calling thread only to hand the result over.
      *
      * @param inputStream        JCL text of the job.
      * @param wait               Whether we need for the job to complete.
@@ -267,29 +448,89 @@ class ZFTPConnector {
      * @param deleteLogFromSpool Whether the job log should be deleted fro spool upon job end.
      * @return Whether the job was successfully submitted and the job log was fetched.
      * <br><b><code>jobCC</code></b> holds the response of the operation (including errors).
+     * @see ZFTPConnector#submitAsync(InputStream, boolean, int, OutputStream, boolean)
+     */
+    boolean submit(InputStream inputStream, boolean wait, int waitTime, OutputStream outputStream, boolean deleteLogFromSpool) {
+        CompletableFuture<Boolean> result = this.submitAsync(inputStream, wait, waitTime, outputStream, deleteLogFromSpool);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            this.cancel();
+            this.err("Interrupted.");
+            this.jobCC = "WAIT_INTERRUPTED";
+            return false;
+        } catch (ExecutionException e) {
+            this.err("Job processing failed: " + e.getCause());
+            this.jobCC = "IO_ERROR";
+            return false;
+        }
+    }
+
+    /**
+     * Submit job for execution. Submission and job log retrieval run on {@link ZOSWaitEngine} job workers,
+     * waiting for JES is done by {@link JESMonitor} and holds no thread.
+     *
+     * @param inputStream        JCL text of the job.
+     * @param wait               Whether we need for the job to complete.
+     * @param waitTime           Maximum wait time in minutes. If set to <code>0</code>, will wait forever.
+     * @param outputStream       Stream to put job log. Can be <code>Null</code>.
+     * @param deleteLogFromSpool Whether the job log should be deleted fro spool upon job end.
+     * @return Future of whether the job was successfully submitted and the job log was fetched.
+     * <br><b><code>jobCC</code></b> holds the response of the operation (including errors) once it completes.
      * @see ZFTPConnector#logon()
-     * @see ZFTPConnector#waitForCompletion(OutputStream)
+     * @see ZFTPConnector#await(OutputStream, boolean)
      * @see ZFTPConnector#deleteJobLog()
      */
-    boolean submit(InputStream inputStream, boolean wait, int waitTime, OutputStream outputStream, boolean deleteLogFromSpool) {
+    CompletableFuture<Boolean> submitAsync(InputStream inputStream, boolean wait, int waitTime, OutputStream outputStream, boolean deleteLogFromSpool) {
+        this.setWaitTime(waitTime);
+        return ZOSWaitEngine.get().track(this.storeAsync(inputStream)
+                .thenCompose(submitted -> {
+                    if (submitted && wait)
+                        return this.await(outputStream, deleteLogFromSpool);
+                    // Nothing left to do over a reused session.
+                    this.disconnect();
+                    return CompletableFuture.completedFuture(submitted);
+                }));
+    }
+
+    /**
+     * Store the job into JES on a {@link ZOSWaitEngine} job worker, without waiting for it.
+     * Callers waiting for the job set <b><code>waitTime</code></b> via
+     * {@link ZFTPConnector#submitAsync(InputStream, boolean, int, OutputStream, boolean)} or
+     * {@link ZFTPConnector#setWaitTime(int)} and continue with {@link ZFTPConnector#await(OutputStream, boolean)}.
+     *
+     * @param inputStream JCL text of the job.
+     * @return Future of whether the job was successfully submitted.
+     */
+    CompletableFuture<Boolean> storeAsync(InputStream inputStream) {
+        return CompletableFuture.supplyAsync(() -> this.submitJob(inputStream), ZOSWaitEngine.get().jobs());
+    }
+
+    /**
+     * @param waitTime Maximum wait time in minutes. If set to <code>0</code>, will wait forever.
+     */
+    void setWaitTime(int waitTime) {
         this.waitTime = ((long) waitTime) * 60 * 1000; // Minutes to milliseconds.
+    }
 
+    /**
+     * Store the job into JES and obtain its ID.
+     *
+     * @param inputStream JCL text of the job.
+     * @return Whether the job was successfully submitted.
+     */
+    private boolean submitJob(InputStream inputStream) {
         // Clean-up
         this.jobID = "";
         this.jobName = "";
         this.jobCC = "";
         this.jobLogCaptured = false;
-
-        // Create FTPClient
-        this.FTPClient = new FTPClient();
-        // Make password invisible from log
-        this.FTPClient.addProtocolCommandListener(new PrintCommandListener(new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)), true));
-
+        this.reconnects = 0;
+        this.sessions = 0;
 
         // Verify connection.
         if (!this.logon()) {
-            this.disconnect();
-            this.jobCC = "COULD_NOT_CONNECT";
+            this.jobCC = this.circuitOpen ? "CIRCUIT_OPEN" : "COULD_NOT_CONNECT";
             return false;
         }
 
@@ -298,10 +539,21 @@ class ZFTPConnector {
         	if (!this.FTPActiveMode) {
         		this.FTPClient.enterLocalPassiveMode();
         	}
-            this.FTPClient.storeFile("jenkins.sub", inputStream);
+            String[] reply;
+            if (this.modeZ != null && this.modeZ.begin(this.FTPClient)) {
+                try {
+                    this.FTPClient.storeFile("jenkins.sub", this.modeZ.deflate(inputStream));
+                    reply = this.FTPClient.getReplyStrings();
+                } finally {
+                    this.modeZ.end(this.FTPClient);
+                }
+            } else {
+                this.FTPClient.storeFile("jenkins.sub", inputStream);
+                reply = this.FTPClient.getReplyStrings();
+            }
 
             // Scan reply from server to get JobID.
-            for (String s : this.FTPClient.getReplyStrings()) {
+            for (String s : reply) {
                 Matcher matcher = JesJobName.matcher(s);
                 if (matcher.matches()) {
                     // Set jobID
@@ -311,8 +563,9 @@ class ZFTPConnector {
             }
             if (this.jobID.isEmpty()) {
                 this.err("Failed to parse JES job ID. Response lines:---->\n");
-                Arrays.stream(this.FTPClient.getReplyStrings()).forEachOrdered(this::err);
+                Arrays.stream(reply).forEachOrdered(this::err);
                 this.err("Failed to parse JES job ID. Response lines:<----\n");
+                this.disconnect();
                 this.jobCC = "FAILED_TO_PARSE_JOB_ID";
                 return false;
             }
@@ -321,253 +574,590 @@ class ZFTPConnector {
         } catch (FTPConnectionClosedException e) {
             this.err("Server closed connection.");
             e.printStackTrace();
+            this.onIOException(e);
+            this.disconnect();
             this.jobCC = "SERVER_CLOSED_CONNECTION";
             return false;
         } catch (IOException e) {
             e.printStackTrace();
+            this.onIOException(e);
+            this.disconnect();
             this.jobCC = "IO_ERROR";
             return false;
         }
 
-        if (wait) {
-            // Wait for completion.
-            if (this.waitForCompletion(outputStream)) {
-                if (deleteLogFromSpool) {
-                    // Delete job log from spool.
-                    this.deleteJobLog();
-                }
-                this.disconnect();
-                return true;
-            } else {
-                if (this.jobCC == null)
-                    this.jobCC = "JOB_DID_NOT_FINISH_IN_TIME";
-                this.disconnect();
-                return false;
-            }
-        }
-
-        // If we are here, everything went fine.
-        this.disconnect();
+        // If we are here, everything went fine. Reused session stays for job log retrieval.
+        if (!this.reuseSession)
+            this.disconnect();
         return true;
     }
 
+    /**
+     * Wait for the completion of a job submitted earlier (e.g. by another build step).
+     *
+     * @param jobID              JES job ID.
+     * @param outputStream       Stream to hold job log.
+     * @param deleteLogFromSpool Whether the job log should be deleted fro spool upon job end.
+     * @return Future of whether the job finished in time and its log was fetched.
+     * @see ZFTPConnector#await(OutputStream, boolean)
+     */
+    CompletableFuture<Boolean> await(String jobID, OutputStream outputStream, boolean deleteLogFromSpool) {
+        this.jobID = jobID;
+        this.jobName = "";
+        this.jobCC = "";
+        this.reconnects = 0;
+        this.sessions = 0;
+        return this.await(outputStream, deleteLogFromSpool);
+    }
+
     /**
      * Wait for he completion of the job.
      *
-     * @param outputStream Stream to hold job log.
-     * @return Whether the job finished in time.
-     * @see ZFTPConnector#submit(InputStream, boolean, int, OutputStream, boolean)
-     * @see ZFTPConnector#fetchJobLog(OutputStream)
-     */
-    private boolean waitForCompletion(OutputStream outputStream) {
-        // Initialize current time and estimated time.
-        long curr = System.currentTimeMillis();
-        long jobEndTime = curr + this.waitTime;
-        boolean eternal = (waitTime == 0);
-        boolean jobWasObserved = false;
-
-        // Perform wait
-        do {
-            // Wait
-            try {
-                Thread.sleep(waitInterval);
-                curr = System.currentTimeMillis();
-            } catch (InterruptedException e) {
-                this.err("Interrupted.");
-                this.jobCC = "WAIT_INTERRUPTED";
-                return false;
-            }
+     * @param outputStream       Stream to hold job log.
+     * @param deleteLogFromSpool Whether the job log should be deleted fro spool upon job end.
+     * @return Future of whether the job finished in time and its log was fetched.
+     * @see ZFTPConnector#complete(JESMonitor.Watch, OutputStream, long, boolean)
+     */
+    CompletableFuture<Boolean> await(OutputStream outputStream, boolean deleteLogFromSpool) {
+        ZOSWaitEngine engine = ZOSWaitEngine.get();
+        long deadline = (this.waitTime == 0) ? 0 : System.currentTimeMillis() + this.waitTime;
 
-            // check job state
-            if (this.checkJobAvailability()) {
-                jobWasObserved = true;
+        // Wait for the job to reach OUTPUT.
+        JESMonitor.Watch watch = this.watch(this.jobID, false);
+        if (deadline != 0)
+            engine.timeout(watch.future, this.waitTime);
+        return watch.future.handle((entry, error) -> error).thenComposeAsync(error -> {
+            if (error == null)
+                return this.complete(watch, outputStream, deadline, deleteLogFromSpool);
+            if (error instanceof TimeoutException) {
+                this.jobCC = "WAIT_ERROR";
+            } else if (error instanceof CancellationException) {
+                this.jobCC = "WAIT_INTERRUPTED";
             } else {
-                if (jobWasObserved) {
-                    return false;
-                }
+                this.err("Failed to check job [" + this.jobID + "] state: " + error.getMessage());
+                this.jobCC = "CHECK_JOB_AVAILABILITY_IO_ERROR";
             }
-            // Try to fetch job log.
-            if (this.fetchJobLog(outputStream))
-                return true;
-        } while (eternal || (curr <= jobEndTime));
+            this.disconnect();
+            return CompletableFuture.completedFuture(false);
+        }, engine.jobs());
+    }
 
-        // Exit with wait error.
-        this.jobCC = "WAIT_ERROR";
-        return false;
+    /**
+     * Stop waiting for the job.
+     */
+    void cancel() {
+        this.cancelled = true;
+        JESMonitor.Watch watch = this.watch;
+        if (watch != null)
+            watch.future.cancel(false);
+        // Pending job log retrieval attempt gives up right away instead of after the delay.
+        CompletableFuture<Void> retry = this.retry;
+        if (retry != null)
+            retry.complete(null);
+        JobLogTail tail = this.tail;
+        if (tail != null)
+            tail.discard();
     }
 
     /**
-     * @return true if job can be listed through FTP.
+     * Register previously submitted job with JES monitor. Doesn't block:
+     * the caller decides whether to wait for the watch or to be called back.
+     *
+     * @param jobID  JES job ID (e.g. remembered across controller restart).
+     * @param listed Whether the job is known to be in JES already, so that it's not waited for if it's gone.
+     * @return Watch of the job.
+     * @see ZFTPConnector#complete(JESMonitor.Watch, OutputStream, long, boolean)
      */
-    private boolean checkJobAvailability() {
-    	if (!this.FTPActiveMode) {
-    		this.FTPClient.enterLocalPassiveMode();
-    	}
-        // Verify connection.
-        if (!this.logon()) {
-            this.jobCC = "CHECK_JOB_AVAILABILITY_ERROR_LOGIN";
-            return false;
+    JESMonitor.Watch watch(String jobID, boolean listed) {
+        this.jobID = jobID;
+        // Session is of no use while JES monitor is polling: unless it's reused, let others have it.
+        if (!this.reuseSession)
+            this.disconnect();
+        this.watch = JESMonitor.get().watch(this.server, this.port, this.userID, this.password,
+                this.JESINTERFACELEVEL1, this.FTPActiveMode, jobID, this.pollingStrategy, listed);
+        if (this.cancelled) {
+            // Cancelled before there was anything to cancel.
+            this.watch.future.cancel(false);
+            return this.watch;
+        }
+        if (this.tailsJobLog()) {
+            JobLogTail tail = new JobLogTail(this.server, this.port, this.userID, this.password, this.FTPActiveMode,
+                    jobID, this.spoolFiles, this.listener.getLogger());
+            this.tail = tail;
+            // Only a job that ended normally gets its job log from the tail, otherwise the tailed data goes away.
+            this.watch.future.whenComplete((status, e) -> {
+                if (e == null)
+                    tail.stop();
+                else
+                    tail.discard();
+            });
+            tail.start();
+        }
+        return this.watch;
+    }
+
+    /**
+     * Fetch job log and RC once the job watch completed successfully, then optionally delete the job from spool.
+     * Runs on {@link ZOSWaitEngine} job workers; retries wait on the scheduler, not on a thread.
+     *
+     * @param watch              Completed watch of the job.
+     * @param outputStream       Stream to hold job log.
+     * @param deadline           Time to give up retrieving the log, <code>0</code> to retry forever.
+     * @param deleteLogFromSpool Whether the job log should be deleted fro spool upon job end.
+     * @return Future of whether job log and RC were obtained.
+     * <br><b><code>jobCC</code></b> holds the response of the operation (including errors) once it completes.
+     * @see ZFTPConnector#fetchJobLog(OutputStream, JESJobStatus)
+     */
+    CompletableFuture<Boolean> complete(JESMonitor.Watch watch, OutputStream outputStream, long deadline, boolean deleteLogFromSpool) {
+        this.jobLogCaptured = false;
+        this.jobLogScan = null;
+        this.jobLogReceived = 0;
+        this.spoolFilesReceived.clear();
+        this.log("Job [" + this.jobID + "] state checked " + watch.getPolls() + " time(s) (polling " + this.pollingStrategy + ")");
+        // Reused session sat idle while the job ran, the server may have closed it meanwhile.
+        this.validateSession();
+        JobLogTail tail = this.tail;
+        if (tail != null) {
+            this.tail = null;
+            if (tail.finish())
+                this.tailed = tail;
+            else
+                tail.discard();
         }
+        CompletableFuture<Boolean> retrieval = new CompletableFuture<>();
+        this.retrieveJobLog(watch.future.getNow(null), outputStream, deadline, retrieval);
+        return retrieval.handle((completed, error) -> {
+            if (this.tailed != null) {
+                this.tailed.discard();
+                this.tailed = null;
+            }
+            if (error != null) {
+                this.disconnect();
+                throw (error instanceof CompletionException) ? (CompletionException) error : new CompletionException(error);
+            }
+            if (this.modeZ != null) {
+                if (this.modeZ.isRefused())
+                    this.log("FTP: server refused MODE Z, data was transferred uncompressed");
+                else
+                    this.log("FTP: MODE Z moved " + this.modeZ.getCompressed() + " byte(s) for " + this.modeZ.getUncompressed()
+                            + " byte(s) of data while processing job [" + this.jobID + "]");
+            }
+            if (completed && deleteLogFromSpool) {
+                // Delete job log from spool.
+                this.deleteJobLog();
+            }
+            if (this.reuseSession)
+                this.log("FTP: " + this.sessions + " session(s) taken and " + this.reconnects + " reconnect(s) while processing job ["
+                        + this.jobID + "]");
+            this.disconnect();
+            return completed;
+        });
+    }
 
-        // Try listing files
+    /**
+     * Attempt to retrieve job log and RC of the job in OUTPUT. Failed attempt schedules the next one
+     * until the deadline, waiting on the {@link ZOSWaitEngine} scheduler rather than on a job worker.
+     *
+     * @param status       JES status of the job or <code>null</code> if it vanished.
+     * @param outputStream Stream to hold job log.
+     * @param deadline     Time to give up, <code>0</code> to retry forever.
+     * @param result       Completed with whether job log and RC were obtained.
+     */
+    private void retrieveJobLog(JESJobStatus status, OutputStream outputStream, long deadline, CompletableFuture<Boolean> result) {
         try {
-            String[] availableJobs = this.FTPClient.listNames("*");
-            if (availableJobs == null) {
-                this.err("failed to list available jobs");
-                return false;
+            if (this.cancelled) {
+                this.err("Interrupted.");
+                this.jobCC = "WAIT_INTERRUPTED";
+                result.complete(false);
+                return;
             }
-            if (Arrays.stream(availableJobs).anyMatch(name -> this.jobID.equals(name))) {
-                return true;
+            if (status == null) {
+                // Purged meanwhile (or not even listable): no point in retrying until the deadline.
+                this.err("Job [" + this.jobID + "] cannot be found in JES");
+                this.jobCC = "JOB_NOT_FOUND_IN_JES";
+                result.complete(false);
+                return;
             }
-            this.err("Job [" + this.jobID + "] cannot be found in JES");
-            this.jobCC = "JOB_NOT_FOUND_IN_JES";
-            return false;
-        } catch (IOException e) {
-            this.jobCC = "CHECK_JOB_AVAILABILITY_IO_ERROR";
-            return false;
+            // Job is in OUTPUT: its listing entry already holds the status, so fetch job log and take RC from it.
+            // Only if that fails, refresh the entry with own listing on the next attempt.
+            if (this.fetchJobLog(outputStream, status)) {
+                result.complete(true);
+                return;
+            }
+            if (deadline != 0 && System.currentTimeMillis() + waitInterval > deadline) {
+                // Exit with wait error.
+                this.jobCC = "WAIT_ERROR";
+                result.complete(false);
+                return;
+            }
+            ZOSWaitEngine engine = ZOSWaitEngine.get();
+            CompletableFuture<Void> retry = new CompletableFuture<>();
+            ScheduledFuture<?> timer = engine.schedule(() -> retry.complete(null), waitInterval);
+            this.retry = retry;
+            retry.thenRunAsync(() -> {
+                timer.cancel(false);
+                this.retry = null;
+                this.retryJobLog(outputStream, deadline, result);
+            }, engine.jobs());
+            if (this.cancelled)
+                retry.complete(null);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
         }
     }
 
+    /**
+     * Next attempt of {@link #retrieveJobLog(JESJobStatus, OutputStream, long, CompletableFuture)} with refreshed status.
+     *
+     * @param outputStream Stream to hold job log.
+     * @param deadline     Time to give up, <code>0</code> to retry forever.
+     * @param result       Completed with whether job log and RC were obtained.
+     */
+    private void retryJobLog(OutputStream outputStream, long deadline, CompletableFuture<Boolean> result) {
+        JESJobStatus status = null;
+        try {
+            if (!this.cancelled) {
+                // Make sure reused connection is still alive.
+                this.validateSession();
+                status = this.listJobStatus();
+            }
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        this.retrieveJobLog(status, outputStream, deadline, result);
+    }
+
     /**
      * Fetch job log from spool.
      *
      * @param outputStream Stream to hold the job log.
+     * @param status       JES status of the job in OUTPUT.
      * @return Whether the job log was fetched from the LPAR.
-     * @see ZFTPConnector#waitForCompletion(OutputStream)
+     * @see ZFTPConnector#retrieveJobLog(JESJobStatus, OutputStream, long, CompletableFuture)
      */
-    private boolean fetchJobLog(OutputStream outputStream) {
+    private boolean fetchJobLog(OutputStream outputStream, JESJobStatus status) {
+        if (!this.jobLogCaptured && this.tailed != null) {
+            // Live tail already got all of it, no need to transfer the job log again.
+            try {
+                this.tailed.writeTo(outputStream);
+            } catch (IOException e) {
+                this.err("Failed to write tailed job log: " + e.getMessage());
+                this.jobCC = "FETCH_LOG_IO_ERROR";
+                return false;
+            } finally {
+                this.tailed.discard();
+                this.tailed = null;
+            }
+            this.jobLogCaptured = true;
+            return this.obtainJobRC(status);
+        }
+
         // Verify connection.
         if (!this.logon()) {
             this.jobCC = "FETCH_LOG_ERROR_LOGIN";
             return false;
         }
 
-    	if (!this.FTPActiveMode) {
-    		this.FTPClient.enterLocalPassiveMode();
-    	}
         if (!this.jobLogCaptured) {
             // Try fetching.
             try {
-                // Try fetching the log.
-                this.jobLogCaptured = this.FTPClient.retrieveFile(this.jobID, outputStream);
+                // Try fetching the log. JESINTERFACELEVEL=1 listing has no RC: scan the log for HASP395 on the way.
+                if (!this.spoolFiles.isEmpty() || this.parallelRetrieval) {
+                    if (!this.JESINTERFACELEVEL1) {
+                        List<JESSpoolFile> selected = this.selectSpoolFiles();
+                        if (selected != null) {
+                            this.retrieveSpoolFiles(selected, outputStream);
+                            this.jobLogCaptured = true;
+                            return this.obtainJobRC(status);
+                        }
+                    } else {
+                        this.log("Spool file listing needs JESINTERFACELEVEL=2, retrieving the whole job log");
+                    }
+                }
+                // Data written by a failed attempt stays: the log is fetched again, but only what's past it is written.
+                // z/OS honours REST only in block and compressed modes, not in stream mode used for JES.
+                // Besides, ASCII transfers count bytes after CRLF conversion, which don't match server offsets.
+                if (this.jobLogReceived > 0)
+                    this.log("Resuming job log retrieval after " + this.jobLogReceived + " byte(s)");
+                ResumeStream resume = new ResumeStream(outputStream, this.jobLogReceived);
+                OutputStream target = resume;
+                if (this.JESINTERFACELEVEL1) {
+                    this.jobLogScan = new HASP395Scanner(resume, (status != null) ? status.jobName : null);
+                    target = this.jobLogScan;
+                }
+                try {
+                    this.jobLogCaptured = this.retrieve(this.FTPClient, this.jobID, target);
+                } finally {
+                    this.jobLogReceived = resume.getPosition();
+                }
+                if (this.jobLogScan != null)
+                    this.jobLogScan.finish();
                 if (!this.jobLogCaptured) {
                     this.jobCC = "RETR_ERR_JOB_NOT_FINISHED_OR_NOT_FOUND";
                     return false;
                 }
             } catch (IOException e) {
+                this.onIOException(e);
                 this.jobCC = "FETCH_LOG_IO_ERROR";
                 return false;
             }
         }
-        return this.obtainJobRC();
+        return this.obtainJobRC(status);
     }
 
     /**
-     * @return Whether job RC was correctly obtained or not.
+     * List spool files of the job and pick the ones to retrieve separately:
+     * those matching {@link #spoolFiles} or, in parallel retrieval mode, all of them if the job is big enough.
+     *
+     * @return Spool files in listing order or <code>null</code> if the whole job log should be retrieved at once.
+     * @throws IOException if the listing failed.
      */
-    private boolean obtainJobRC() {
-        this.jobCC = "COULD_NOT_RETRIEVE_JOB_RC";
-        // Verify connection.
-        if (!this.logon()) {
-            return false;
+    private List<JESSpoolFile> selectSpoolFiles() throws IOException {
+        FTPFile[] listing = this.FTPClient.listFiles(this.jobID);
+        List<JESSpoolFile> all = new ArrayList<>();
+        long bytes = 0;
+        if (listing != null) {
+            for (FTPFile ftpFile : listing) {
+                if (ftpFile instanceof JESEntryParser.SpoolEntry) {
+                    JESSpoolFile spoolFile = ((JESEntryParser.SpoolEntry) ftpFile).spoolFile;
+                    all.add(spoolFile);
+                    bytes += spoolFile.byteCount;
+                }
+            }
         }
+        if (all.isEmpty()) {
+            this.log("No spool files listed for " + this.jobID + ", retrieving the whole job log");
+            return null;
+        }
+        if (this.spoolFiles.isEmpty()) {
+            if (all.size() < 2 || bytes < parallelRetrievalThreshold)
+                return null;
+            this.log("Retrieving " + all.size() + " spool files (" + bytes + " bytes) in parallel");
+            return all;
+        }
+        List<JESSpoolFile> selected = new ArrayList<>();
+        for (JESSpoolFile spoolFile : all) {
+            if (spoolFile.matches(this.spoolFiles))
+                selected.add(spoolFile);
+        }
+        if (selected.isEmpty()) {
+            this.log("No spool files of " + this.jobID + " match " + this.spoolFiles);
+        } else {
+            this.log("Retrieving " + selected.size() + " of " + all.size() + " spool files: " + selected);
+        }
+        return selected;
+    }
 
-        // JOB NAME
-        Pattern JOBNAME = Pattern.compile("(\\S+)\\s+" + jobID + "\\s+(.*)");
+    /**
+     * Retrieve spool files, each as <code>JOBID.n</code> over its own pooled session,
+     * in parallel on {@link ZOSWaitEngine#transfers()}.
+     * Files are written in the given order, separated the same way as in the whole job log,
+     * so the result of retrieving all of them matches the single <code>RETR JOBID</code>.
+     *
+     * @param selected     Spool files to retrieve.
+     * @param outputStream Stream to write the spool files to.
+     * @throws IOException if a transfer failed.
+     */
+    private void retrieveSpoolFiles(List<JESSpoolFile> selected, OutputStream outputStream) throws IOException {
+        // Spool files written by a failed attempt stay, only the remaining ones are retrieved again.
+        List<JESSpoolFile> remaining = new ArrayList<>(selected.size());
+        for (JESSpoolFile spoolFile : selected) {
+            if (!this.spoolFilesReceived.contains(spoolFile.id))
+                remaining.add(spoolFile);
+        }
+        if (remaining.size() < selected.size())
+            this.log("Resuming job log retrieval: " + remaining.size() + " of " + selected.size() + " spool files remain");
+        // Own session would sit idle while transfers wait for sessions to the same server: let them have it.
+        this.disconnect();
+        List<CompletableFuture<SpillableOutputStream>> transfers = new ArrayList<>(remaining.size());
+        AtomicBoolean aborted = new AtomicBoolean();
+        for (JESSpoolFile spoolFile : remaining) {
+            transfers.add(CompletableFuture.supplyAsync(() -> this.retrieveSpoolFile(spoolFile, aborted), ZOSWaitEngine.get().transfers()));
+        }
+        try {
+            for (int i = 0; i < transfers.size(); i++) {
+                SpillableOutputStream content = transfers.get(i).join();
+                transfers.set(i, null);
+                try {
+                    writeSpoolFile(outputStream, content, this.spoolFilesReceived.isEmpty());
+                } finally {
+                    content.discard();
+                }
+                this.spoolFilesReceived.add(remaining.get(i).id);
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            // Transfers not written after a failure: those not started yet skip the transfer, the others are dropped
+            // once they end. Futures aren't cancelled, cancelling would lose the result of a running transfer.
+            aborted.set(true);
+            for (CompletableFuture<SpillableOutputStream> transfer : transfers) {
+                if (transfer != null) {
+                    transfer.thenAccept(content -> {
+                        if (content != null)
+                            content.discard();
+                    });
+                }
+            }
+        }
+    }
 
-        Pattern CC = Pattern.compile(".* RC=(\\S+) .*");
-        Pattern CCUndefined = Pattern.compile(".* RC\\s+(\\S+)\\s+.*");
-        Pattern ABEND = Pattern.compile(".* ABEND=(.*?) .*");
-        Pattern JCLERROR = Pattern.compile(".* \\(JCL error\\) .*");
+    /**
+     * Write spool file the way it appears in the whole job log: separated from the previous one
+     * and with its last line terminated.
+     *
+     * @param outputStream Stream to write to.
+     * @param content      Spool file content (closed), <code>null</code> if empty.
+     * @param first        Whether it's the first spool file written.
+     * @throws IOException if the content couldn't be read or written.
+     */
+    static void writeSpoolFile(OutputStream outputStream, SpillableOutputStream content, boolean first) throws IOException {
+        if (!first)
+            outputStream.write((spoolFileSeparator + System.lineSeparator()).getBytes("US-ASCII"));
+        if (content == null)
+            return;
+        content.writeTo(outputStream);
+        if (content.size() > 0 && !content.endsWithNewline())
+            outputStream.write(System.lineSeparator().getBytes("US-ASCII"));
+    }
 
-    	if (!this.FTPActiveMode) {
-    		this.FTPClient.enterLocalPassiveMode();
-    	}
-        // Check RC.
+    /**
+     * Retrieve single spool file over a separate pooled session.
+     *
+     * @param spoolFile Spool file to retrieve.
+     * @param aborted   Set once the result is no longer wanted.
+     * @return Spool file content, <code>null</code> if aborted.
+     * @throws UncheckedIOException if the session couldn't be obtained or the transfer failed.
+     */
+    private SpillableOutputStream retrieveSpoolFile(JESSpoolFile spoolFile, AtomicBoolean aborted) {
+        if (aborted.get())
+            return null;
+        ZFTPSessionPool pool = ZFTPSessionPool.get();
+        ZFTPSessionPool.Session session = null;
+        SpillableOutputStream content = new SpillableOutputStream();
         try {
-            for (FTPFile ftpFile : this.FTPClient.listFiles("*")) {
-                String fileName = ftpFile.toString();
-
-                Matcher JOBNAMEMatcher = JOBNAME.matcher(fileName);
-                if (JOBNAMEMatcher.matches()) {
-                    this.jobName = JOBNAMEMatcher.group(1);
-                    this.log("Found job " + this.jobID + " with name " + this.jobName + " in JES");
-                    String rcPart = JOBNAMEMatcher.group(2);
-                    this.log("Will check JOB status in '" + rcPart + "'");
-                    if (this.JESINTERFACELEVEL1) {
-                        if (rcPart.startsWith("INPUT")) {
-                            this.log("Found job " + jobName + " in INPUT");
-                            return false;
-                        }
-                        if (rcPart.startsWith("ACTIVE")) {
-                            this.log("Found job " + jobName + " in ACTIVE");
-                            return false;
-                        }
-                        if (rcPart.startsWith("OUTPUT")) {
-                            this.log("Found job " + jobName + " in OUTPUT, will fetch log for additional scan");
-                            Pattern HASP395 = Pattern.compile(".*HASP395\\s+" + jobName + "\\s+ENDED(\\s+-\\s+(\\S+)\\s*)?.*");
-                            // Try fetching the log.
-                            ByteArrayOutputStream tempOutputStream = new ByteArrayOutputStream();
-                            boolean gotHASP395 = false;
-                            // If we see "JCL ERROR" line before HASP365 without actual RC - use JCL ERROR
-                            boolean sawJCLError = false;
-                            if (this.FTPClient.retrieveFile(this.jobID, tempOutputStream)) {
-                                for (String line : tempOutputStream.toString(StandardCharsets.US_ASCII.name()).split("\\n")) {
-                                    sawJCLError |= line.contains("JCL ERROR");
-                                    Matcher HASP395Matcher = HASP395.matcher(line);
-                                    if (HASP395Matcher.matches()) {
-                                        rcPart = HASP395Matcher.group(2);
-                                        if (rcPart == null) {
-                                            if (sawJCLError) {
-                                                this.jobCC = "JCL_ERROR";
-                                                return true;
-                                            }
-                                            this.err("Found HASP395 with no RC info: '" + line + "'");
-                                            return false;
-                                        }
-                                        this.log("Found HASP395: '" + rcPart + "'");
-                                        rcPart = "FROM_JOB_LOG " + rcPart + " FROM_JOB_LOG";
-                                        gotHASP395 = true;
-                                        break;
-                                    }
-                                }
-                            }
-                            if (!gotHASP395) {
-                                this.err("Failed to find HASP395 in job log");
-                                return false;
-                            }
-                        }
-                    }
-                    // Here we either have rcPart in JESINTERFACELEVEL=2 format
-                    Matcher JCLERRORMatcher = JCLERROR.matcher(rcPart);
-                    if (JCLERRORMatcher.matches()) {
-                        this.jobCC = "JCL_ERROR";
-                        return true;
-                    }
-                    Matcher ABENDMatcher = ABEND.matcher(rcPart);
-                    if (ABENDMatcher.matches()) {
-                        this.jobCC = "ABEND_" + ABENDMatcher.group(1);
-                        return true;
-                    }
-                    Matcher CCUndefinedMatcher = CCUndefined.matcher(rcPart);
-                    if (CCUndefinedMatcher.matches()) {
-                        this.jobCC = CCUndefinedMatcher.group(1).toUpperCase();
-                        return true;
-                    }
-                    Matcher CCMatcher = CC.matcher(rcPart);
-                    if (CCMatcher.matches()) {
-                        this.jobCC = CCMatcher.group(1);
-                        return true;
-                    }
-                    this.err("Unexpected rc part: '" + rcPart + "'");
+            session = pool.borrow(this.server, this.port, this.userID, this.password, this.JESINTERFACELEVEL1);
+            if (this.FTPActiveMode) {
+                session.client.enterLocalActiveMode();
+            } else {
+                session.client.enterLocalPassiveMode();
+            }
+            if (!this.retrieve(session.client, this.jobID + "." + spoolFile.id, content))
+                throw new IOException("Failed to retrieve spool file " + spoolFile.id + " (" + spoolFile + "): " + session.client.getReplyString());
+            content.close();
+            pool.release(session);
+            if (aborted.get()) {
+                content.discard();
+                return null;
+            }
+            return content;
+        } catch (IOException e) {
+            content.discard();
+            if (session != null)
+                pool.invalidate(session);
+            throw new UncheckedIOException(e);
+        }
+    }
 
-                    return false;
+    /**
+     * <code>RETR</code> compressed if requested and supported by the server.
+     *
+     * @param client       Logged-on session.
+     * @param remote       Job or spool file to retrieve.
+     * @param outputStream Stream to write the data to.
+     * @return Whether the transfer succeeded.
+     * @throws IOException if the transfer failed.
+     */
+    private boolean retrieve(FTPClient client, String remote, OutputStream outputStream) throws IOException {
+        if (this.modeZ == null || !this.modeZ.begin(client))
+            return client.retrieveFile(remote, outputStream);
+        // Pooled session must not be left in MODE Z.
+        try (OutputStream data = this.modeZ.inflate(outputStream)) {
+            return client.retrieveFile(remote, data);
+        } finally {
+            this.modeZ.end(client);
+        }
+    }
+
+    /**
+     * List JES for the job status. Used only when the status provided by JES monitor turned out to be insufficient.
+     * With <code>JESINTERFACELEVEL=2</code> only the job itself is listed.
+     *
+     * @return Status of the job or <code>null</code> if it can't be found.
+     */
+    private JESJobStatus listJobStatus() {
+        // Verify connection.
+        if (!this.logon()) {
+            return null;
+        }
+        try {
+            FTPFile[] listing = this.FTPClient.listFiles(this.JESINTERFACELEVEL1 ? "*" : this.jobID);
+            if (listing == null) {
+                this.err("failed to list available jobs");
+                return null;
+            }
+            for (FTPFile ftpFile : listing) {
+                if (ftpFile instanceof JESEntryParser.Entry && this.jobID.equals(ftpFile.getName()))
+                    return ((JESEntryParser.Entry) ftpFile).status;
+            }
+        } catch (IOException e) {
+            this.onIOException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Obtain job RC from its JES status (and HASP395 scan of the job log for <code>JESINTERFACELEVEL=1</code>).
+     *
+     * @param status JES status of the job.
+     * @return Whether job RC was correctly obtained or not.
+     */
+    private boolean obtainJobRC(JESJobStatus status) {
+        this.jobCC = "COULD_NOT_RETRIEVE_JOB_RC";
+        if (status == null || !this.jobID.equals(status.jobID)) {
+            return false;
+        }
+
+        this.jobName = status.jobName;
+        this.log("Found job " + this.jobID + " with name " + this.jobName + " in JES");
+        this.log("Will check JOB status in '" + status.entry.trim() + "'");
+        if (status.state != JESJobStatus.State.OUTPUT) {
+            this.log("Found job " + this.jobName + " in " + status.state);
+            return false;
+        }
+
+        String cc;
+        if (this.JESINTERFACELEVEL1) {
+            this.log("Found job " + this.jobName + " in OUTPUT, will check HASP395 in job log");
+            // Job log was scanned while it was retrieved.
+            // If we saw "JCL ERROR" line before HASP395 without actual RC - use JCL ERROR
+            HASP395Scanner scan = this.jobLogScan;
+            if (scan == null || scan.getHASP395Line() == null) {
+                this.err("Failed to find HASP395 in job log");
+                return false;
+            }
+            if (scan.getRC() == null) {
+                if (scan.sawJCLError()) {
+                    this.jobCC = "JCL_ERROR";
+                    return true;
                 }
+                this.err("Found HASP395 with no RC info: '" + scan.getHASP395Line() + "'");
+                return false;
             }
-        } catch (IOException ignored) {
-            // Do nothing.
+            this.log("Found HASP395: '" + scan.getRC() + "'");
+            cc = JESJobStatus.parseJobCC(scan.getRC());
+        } else {
+            cc = status.getJobCC();
+        }
+        if (cc == null) {
+            this.err("Unexpected rc part: '" + status.entry.trim() + "'");
+            return false;
         }
-        return false;
+        this.jobCC = cc;
+        return true;
     }
 
     /**
@@ -588,7 +1178,7 @@ class ZFTPConnector {
         try {
             this.FTPClient.deleteFile(this.jobID);
         } catch (IOException e) {
-            // Do nothing.
+            this.onIOException(e);
         }
     }
 
@@ -610,6 +1200,15 @@ class ZFTPConnector {
         return this.jobName;
     }
 
+    /**
+     * Get number of control connection re-establishments for the current job.
+     *
+     * @return Current <b><code>reconnects</code></b>.
+     */
+    int getReconnects() {
+        return this.reconnects;
+    }
+
     /**
      * Get JobCC.
      *
@@ -642,4 +1241,51 @@ class ZFTPConnector {
         if (listener != null)
             listener.error(text);
     }
-}
\ No newline at end of file
+
+    /**
+     * <h2>ZFTPConnector.ResumeStream</h2>
+     * Drops data already written by a previous attempt and keeps the position reached.
+     */
+    static final class ResumeStream extends FilterOutputStream {
+        /**
+         * Bytes to drop.
+         */
+        private final long skip;
+        /**
+         * Bytes seen so far.
+         */
+        private long position;
+
+        ResumeStream(OutputStream out, long skip) {
+            super(out);
+            this.skip = skip;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (this.position >= this.skip)
+                this.out.write(b);
+            this.position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int drop = (int) Math.max(0, Math.min(len, this.skip - this.position));
+            if (drop < len)
+                this.out.write(b, off + drop, len - drop);
+            this.position += len;
+        }
+
+        @Override
+        public void close() {
+            // Output belongs to the caller.
+        }
+
+        /**
+         * @return Bytes of the log now in the output.
+         */
+        long getPosition() {
+            return Math.max(this.skip, this.position);
+        }
+    }
+}
@@ -0,0 +1,631 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import org.apache.commons.net.PrintCommandListener;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * <h2>ZFTPSessionPool</h2>
+ * Pool of logged-on FTP sessions shared by all connectors of this JVM.
+ * Sessions are keyed by server, port, user and JES interface level, are handed out
+ * with <code>site filetype=jes</code> already applied and are validated with NOOP before reuse.
+ * Listings are parsed by {@link JESEntryParser}.
+ * Open sessions (idle ones included) per server are limited to <code>ZFTPSessionPool.maxSessionsPerServer</code>
+ * to stay within FTP server MAXSESSIONS: callers over the limit wait in a fair FIFO queue for up to
+ * <code>ZFTPSessionPool.queueTimeout</code> seconds instead of being refused by the server.
+ * While anybody waits, sessions returned to the pool are closed and idle ones of other users are evicted.
+ * The limit is per JVM: steps running on agents (<code>runOnAgent</code>) have a pool each,
+ * so MAXSESSIONS must allow for the limit times the number of such agents.
+ * Servers failing to accept connections are tracked by {@link ServerHealth}: sessions to them are refused at once.
+ *
+ * @see ZFTPConnector
+ */
+final class ZFTPSessionPool {
+    /**
+     * Simple logger.
+     */
+    private static final Logger logger = Logger.getLogger(ZFTPSessionPool.class.getName());
+    /**
+     * Idle session lifetime in milliseconds. Keep below FTP server INACTIVE setting.
+     */
+    private static final long idleTimeout = Long.getLong(ZFTPSessionPool.class.getName() + ".idleTimeout", 120) * 1000;
+    /**
+     * Maximum number of idle sessions kept per key.
+     */
+    private static final int maxIdlePerKey = Integer.getInteger(ZFTPSessionPool.class.getName() + ".maxIdlePerKey", 4);
+    /**
+     * Maximum number of open sessions per server, <code>0</code> for no limit.
+     */
+    private static final int maxSessionsPerServer = Integer.getInteger(ZFTPSessionPool.class.getName() + ".maxSessionsPerServer", 32);
+    /**
+     * Time to wait for a session over the limit in milliseconds.
+     */
+    private static final long queueTimeout = Long.getLong(ZFTPSessionPool.class.getName() + ".queueTimeout", 600) * 1000;
+    /**
+     * Connect timeout in milliseconds.
+     */
+    private static final int connectTimeout = Integer.getInteger(ZFTPSessionPool.class.getName() + ".connectTimeout", 30) * 1000;
+    /**
+     * Timeout of a single read on control and data connections in milliseconds.
+     */
+    private static final int readTimeout = Integer.getInteger(ZFTPSessionPool.class.getName() + ".readTimeout", 300) * 1000;
+    /**
+     * The pool.
+     */
+    private static final ZFTPSessionPool INSTANCE = new ZFTPSessionPool();
+
+    /**
+     * Idle sessions, most recently used first.
+     */
+    private final Map<Key, Deque<Session>> idle = new HashMap<>();
+    /**
+     * Session limits by server and port.
+     */
+    private final Map<String, ServerLimit> limits = new ConcurrentHashMap<>();
+    /**
+     * Circuit breakers by server and port.
+     */
+    private final Map<String, ServerHealth> health = new ConcurrentHashMap<>();
+
+    /**
+     * Dummy constructor.
+     */
+    private ZFTPSessionPool() {
+    }
+
+    /**
+     * @return JVM-wide pool.
+     */
+    static ZFTPSessionPool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get logged-on session: either validated idle one or a brand new.
+     *
+     * @param server             LPAR name or IP address to connect to.
+     * @param port               FTP port.
+     * @param userID             UserID.
+     * @param password           User password.
+     * @param JESINTERFACELEVEL1 Is FTP server configured for JESINTERFACELEVEL=1?
+     * @return Logged-on session with JES filetype.
+     * @throws IOException if connection or logon failed. Message is suitable for the build log.
+     * @throws ServerHealth.CircuitOpenException if the server is known to be down.
+     */
+    Session borrow(String server, int port, String userID, String password, boolean JESINTERFACELEVEL1) throws IOException {
+        Key key = new Key(server, port, userID, password, JESINTERFACELEVEL1);
+        this.health(key).check();
+        Session session;
+        while ((session = this.pollIdle(key)) != null) {
+            if (session.validate()) {
+                return session;
+            }
+            logger.fine("FTP: dropping stale session to " + key);
+            session.close();
+        }
+        ServerLimit limit = this.limit(key);
+        if (!limit.tryAcquire()) {
+            // Idle sessions of other users hold permits nobody is going to use.
+            this.evictIdle(limit);
+            limit.acquire();
+        }
+        return this.open(key, password, limit);
+    }
+
+    /**
+     * Get logged-on session only if it doesn't mean waiting for the server's session limit, e.g. for a warm-up.
+     *
+     * @param server             LPAR name or IP address to connect to.
+     * @param port               FTP port.
+     * @param userID             UserID.
+     * @param password           User password.
+     * @param JESINTERFACELEVEL1 Is FTP server configured for JESINTERFACELEVEL=1?
+     * @return Logged-on session with JES filetype or <code>null</code> if the server is at its limit.
+     * @throws IOException if connection or logon failed.
+     * @throws ServerHealth.CircuitOpenException if the server is known to be down.
+     */
+    Session tryBorrow(String server, int port, String userID, String password, boolean JESINTERFACELEVEL1) throws IOException {
+        Key key = new Key(server, port, userID, password, JESINTERFACELEVEL1);
+        this.health(key).check();
+        Session session;
+        while ((session = this.pollIdle(key)) != null) {
+            if (session.validate()) {
+                return session;
+            }
+            session.close();
+        }
+        ServerLimit limit = this.limit(key);
+        return limit.tryAcquire() ? this.open(key, password, limit) : null;
+    }
+
+    /**
+     * Return session to the pool. Disconnected sessions are dropped.
+     *
+     * @param session Session previously obtained via {@link #borrow}.
+     */
+    void release(Session session) {
+        if (session == null)
+            return;
+        if (!session.client.isConnected() || session.limit.getQueueLength() > 0) {
+            // Free the permit for the first one waiting instead of keeping the session idle.
+            session.close();
+            return;
+        }
+        session.lastUsed = System.currentTimeMillis();
+        Session extra = null;
+        synchronized (this) {
+            Deque<Session> sessions = this.idle.computeIfAbsent(session.key, k -> new ArrayDeque<>());
+            sessions.addFirst(session);
+            if (sessions.size() > maxIdlePerKey)
+                extra = sessions.removeLast();
+        }
+        if (extra != null)
+            extra.close();
+        this.evictIdle();
+    }
+
+    /**
+     * Close session without returning it to the pool (e.g. after I/O error).
+     *
+     * @param session Session previously obtained via {@link #borrow}.
+     */
+    void invalidate(Session session) {
+        if (session != null)
+            session.close();
+    }
+
+    /**
+     * Close all sessions that were idle for longer than <code>idleTimeout</code>.
+     */
+    void evictIdle() {
+        long deadline = System.currentTimeMillis() - idleTimeout;
+        List<Session> expired = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Deque<Session>> it = this.idle.values().iterator();
+            while (it.hasNext()) {
+                Deque<Session> sessions = it.next();
+                sessions.removeIf(s -> {
+                    if (s.lastUsed < deadline) {
+                        expired.add(s);
+                        return true;
+                    }
+                    return false;
+                });
+                if (sessions.isEmpty())
+                    it.remove();
+            }
+        }
+        expired.forEach(Session::close);
+    }
+
+    /**
+     * Close idle sessions to the server of the limit, whoever they belong to.
+     *
+     * @param limit Limit of the server.
+     */
+    private void evictIdle(ServerLimit limit) {
+        List<Session> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Deque<Session>> it = this.idle.values().iterator();
+            while (it.hasNext()) {
+                Deque<Session> sessions = it.next();
+                sessions.removeIf(s -> {
+                    if (s.limit == limit) {
+                        evicted.add(s);
+                        return true;
+                    }
+                    return false;
+                });
+                if (sessions.isEmpty())
+                    it.remove();
+            }
+        }
+        evicted.forEach(Session::close);
+    }
+
+    /**
+     * @param key Pool key.
+     * @return Session limit of the key's server.
+     */
+    private ServerLimit limit(Key key) {
+        return this.limits.computeIfAbsent(key.server.toUpperCase() + ":" + key.port,
+                name -> new ServerLimit(name, maxSessionsPerServer, queueTimeout));
+    }
+
+    /**
+     * @param key Pool key.
+     * @return Circuit breaker of the key's server.
+     */
+    private ServerHealth health(Key key) {
+        return this.health.computeIfAbsent(key.server.toUpperCase() + ":" + key.port,
+                name -> new ServerHealth(name, key.server, key.port));
+    }
+
+    /**
+     * @param name Server and port.
+     * @return Circuit breaker of the server, <code>null</code> if never connected to.
+     */
+    ServerHealth getHealth(String name) {
+        return this.health.get(name);
+    }
+
+    /**
+     * Apply connect and read timeouts.
+     *
+     * @param client Client not connected yet.
+     */
+    static void configure(FTPClient client) {
+        client.setConnectTimeout(connectTimeout);
+        client.setDefaultTimeout(readTimeout);
+        client.setDataTimeout(readTimeout);
+    }
+
+    /**
+     * @return Session limits of the servers connected to so far.
+     */
+    Collection<ServerLimit> getLimits() {
+        return Collections.unmodifiableCollection(this.limits.values());
+    }
+
+    /**
+     * @param key Pool key.
+     * @return Most recently used idle session for the key or <code>null</code>.
+     */
+    private synchronized Session pollIdle(Key key) {
+        Deque<Session> sessions = this.idle.get(key);
+        if (sessions == null)
+            return null;
+        Session session = sessions.pollFirst();
+        if (sessions.isEmpty())
+            this.idle.remove(key);
+        return session;
+    }
+
+    /**
+     * Connect, logon and switch to JES filetype.
+     *
+     * @param key      Pool key.
+     * @param password User password.
+     * @param limit    Limit of the server, permit already taken. Released when the session is closed.
+     * @return New session.
+     * @throws IOException if any of the steps failed.
+     */
+    private Session open(Key key, String password, ServerLimit limit) throws IOException {
+        FTPClient client = new FTPClient();
+        // Make password invisible from log
+        client.addProtocolCommandListener(new PrintCommandListener(new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)), true));
+        configure(client);
+        Session session = new Session(key, client, limit);
+        ServerHealth health = this.health(key);
+        try {
+            // Try to connect. Only failures up to the greeting tell about the server's health.
+            try {
+                client.connect(key.server, key.port);
+                if (!FTPReply.isPositiveCompletion(client.getReplyCode())) {
+                    throw new IOException("FTP server refused connection.");
+                }
+            } catch (IOException e) {
+                health.failure(e);
+                throw e;
+            }
+            health.success();
+            logger.info("FTP: connected to " + key.server + ":" + key.port);
+
+            // Try to login.
+            if (!client.login(key.userID, password)) {
+                throw new IOException("Could not logon to server.");
+            }
+
+            // Try to set filetype, jesjobname and jesstatus.
+            // Listings are scoped to jobs of the user (JESOWNER is not supported by JESINTERFACELEVEL=1).
+            client.site("filetype=jes jesjobname=*" + (key.JESINTERFACELEVEL1 ? "" : " jesowner=" + key.userID) + " jesstatus=ALL");
+            if (!FTPReply.isPositiveCompletion(client.getReplyCode())) {
+                throw new IOException("FTP server refused to change FileType and JESJobName.");
+            }
+            client.setParserFactory(JESEntryParser.FACTORY);
+        } catch (IOException e) {
+            session.close();
+            throw e;
+        }
+        return session;
+    }
+
+    /**
+     * <h2>ZFTPSessionPool.Key</h2>
+     * Identifies interchangeable sessions. Password is kept as digest only, so that
+     * session is never handed out to a caller with different credentials.
+     */
+    static final class Key {
+        final String server;
+        final int port;
+        final String userID;
+        private final String passwordDigest;
+        final boolean JESINTERFACELEVEL1;
+
+        Key(String server, int port, String userID, String password, boolean JESINTERFACELEVEL1) {
+            this.server = server;
+            this.port = port;
+            this.userID = userID;
+            this.passwordDigest = Util.getDigestOf(String.valueOf(password));
+            this.JESINTERFACELEVEL1 = JESINTERFACELEVEL1;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return this.port == key.port &&
+                    this.JESINTERFACELEVEL1 == key.JESINTERFACELEVEL1 &&
+                    this.server.equalsIgnoreCase(key.server) &&
+                    this.userID.equalsIgnoreCase(key.userID) &&
+                    this.passwordDigest.equals(key.passwordDigest);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.server.toUpperCase(), this.port, this.userID.toUpperCase(), this.JESINTERFACELEVEL1);
+        }
+
+        @Override
+        public String toString() {
+            return this.userID + "@" + this.server + ":" + this.port + (this.JESINTERFACELEVEL1 ? " (JESINTERFACELEVEL=1)" : "");
+        }
+    }
+
+    /**
+     * <h2>ZFTPSessionPool.Session</h2>
+     * Logged-on FTP client together with its pool bookkeeping.
+     */
+    static final class Session {
+        /**
+         * Key this session was created for.
+         */
+        final Key key;
+        /**
+         * Logged-on client.
+         */
+        final FTPClient client;
+        /**
+         * Limit of the server the session counts against.
+         */
+        private final ServerLimit limit;
+        /**
+         * Time the session was returned to the pool.
+         */
+        private long lastUsed;
+        /**
+         * Whether the permit was given back.
+         */
+        private boolean closed;
+
+        private Session(Key key, FTPClient client, ServerLimit limit) {
+            this.key = key;
+            this.client = client;
+            this.limit = limit;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        /**
+         * @return Whether the server still answers NOOP.
+         */
+        boolean validate() {
+            try {
+                return this.client.isConnected() && this.client.sendNoOp();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Logout and disconnect, ignoring errors, and give the permit back.
+         */
+        void close() {
+            try {
+                if (this.client.isConnected())
+                    this.client.logout();
+            } catch (IOException ignored) {
+            } finally {
+                try {
+                    this.client.disconnect();
+                } catch (IOException ignored) {
+                }
+                synchronized (this) {
+                    if (!this.closed)
+                        this.limit.release();
+                    this.closed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * <h2>ZFTPSessionPool.ServerLimit</h2>
+     * Fair semaphore of sessions to one server with wait statistics.
+     */
+    static final class ServerLimit {
+        /**
+         * Server and port.
+         */
+        final String name;
+        /**
+         * Maximum number of open sessions, <code>0</code> for no limit.
+         */
+        final int size;
+        /**
+         * Time to wait for a permit in milliseconds.
+         */
+        private final long timeout;
+        private final Semaphore permits;
+        /**
+         * Sessions currently open.
+         */
+        private final AtomicLong open = new AtomicLong();
+        /**
+         * Acquisitions that had to wait.
+         */
+        private final AtomicLong waits = new AtomicLong();
+        /**
+         * Total time spent waiting in milliseconds.
+         */
+        private final AtomicLong waitTime = new AtomicLong();
+        /**
+         * Longest wait in milliseconds.
+         */
+        private final AtomicLong maxWaitTime = new AtomicLong();
+        /**
+         * Waits given up after <code>queueTimeout</code>.
+         */
+        private final AtomicLong timeouts = new AtomicLong();
+
+        /**
+         * @param name    Server and port.
+         * @param size    Maximum number of open sessions, <code>0</code> for no limit.
+         * @param timeout Time to wait for a permit in milliseconds.
+         */
+        ServerLimit(String name, int size, long timeout) {
+            this.name = name;
+            this.size = Math.max(0, size);
+            this.timeout = timeout;
+            this.permits = new Semaphore(this.size, true);
+        }
+
+        /**
+         * @return Whether a permit was taken without waiting. Never jumps the queue.
+         */
+        boolean tryAcquire() {
+            if (this.size == 0) {
+                this.open.incrementAndGet();
+                return true;
+            }
+            // Untimed tryAcquire() barges even on a fair semaphore, the timed one honours the queue.
+            boolean acquired;
+            try {
+                acquired = this.permits.tryAcquire(0, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (acquired)
+                this.open.incrementAndGet();
+            return acquired;
+        }
+
+        /**
+         * Wait in line for a permit.
+         *
+         * @throws IOException if none was available within <code>queueTimeout</code> or the wait was interrupted.
+         */
+        void acquire() throws IOException {
+            if (this.size == 0) {
+                this.open.incrementAndGet();
+                return;
+            }
+            long start = System.currentTimeMillis();
+            logger.fine("FTP: waiting for a session to " + this.name + ", " + this.getQueueLength() + " already waiting");
+            boolean acquired;
+            try {
+                acquired = this.permits.tryAcquire(this.timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a free FTP session to " + this.name);
+            }
+            long waited = System.currentTimeMillis() - start;
+            this.waits.incrementAndGet();
+            this.waitTime.addAndGet(waited);
+            this.maxWaitTime.accumulateAndGet(waited, Math::max);
+            if (!acquired) {
+                this.timeouts.incrementAndGet();
+                throw new IOException("No free FTP session to " + this.name + " within " + (this.timeout / 1000)
+                        + " seconds (limit " + this.size + " sessions)");
+            }
+            this.open.incrementAndGet();
+        }
+
+        void release() {
+            this.open.decrementAndGet();
+            if (this.size > 0)
+                this.permits.release();
+        }
+
+        /**
+         * @return Callers waiting for a session.
+         */
+        int getQueueLength() {
+            return this.permits.getQueueLength();
+        }
+
+        /**
+         * @return Sessions currently open.
+         */
+        long getOpen() {
+            return this.open.get();
+        }
+
+        /**
+         * @return Acquisitions that had to wait.
+         */
+        long getWaits() {
+            return this.waits.get();
+        }
+
+        /**
+         * @return Total time spent waiting in milliseconds.
+         */
+        long getWaitTime() {
+            return this.waitTime.get();
+        }
+
+        /**
+         * @return Longest wait in milliseconds.
+         */
+        long getMaxWaitTime() {
+            return this.maxWaitTime.get();
+        }
+
+        /**
+         * @return Waits given up after <code>queueTimeout</code>.
+         */
+        long getTimeouts() {
+            return this.timeouts.get();
+        }
+    }
+
+    /**
+     * <h2>ZFTPSessionPool.IdleSessionReaper</h2>
+     * Closes idle sessions even if no build returns anything to the pool.
+     */
+    @Extension
+    public static final class IdleSessionReaper extends AsyncPeriodicWork {
+        public IdleSessionReaper() {
+            super("z/OS FTP idle session reaper");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN;
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            ZFTPSessionPool.get().evictIdle();
+        }
+    }
+}
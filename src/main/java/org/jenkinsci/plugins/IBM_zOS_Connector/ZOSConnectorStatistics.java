@@ -0,0 +1,242 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <h2>ZOSConnectorStatistics</h2>
+ * <i>Manage Jenkins</i> page with runtime figures of the plugin, used to size its thread pools.
+ *
+ * @see ZOSWaitEngine
+ * @see JESMonitor
+ * @see ZFTPSessionPool
+ */
+@Extension
+public class ZOSConnectorStatistics extends ManagementLink {
+    @Override
+    public String getIconFileName() {
+        return Jenkins.get().hasPermission(Jenkins.ADMINISTER) ? "monitor.png" : null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "z/OS Connector statistics";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Jobs in flight, JES monitor, wait engine and FTP session load.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "zos-connector";
+    }
+
+    /**
+     * @return Jobs submitted and not finished yet.
+     */
+    public int getInFlight() {
+        return ZOSWaitEngine.get().getInFlight();
+    }
+
+    /**
+     * @return Jobs monitored in JES.
+     */
+    public int getMonitoredJobs() {
+        return JESMonitor.get().getWatchCount();
+    }
+
+    /**
+     * @return LPAR/user groups polled by JES monitor.
+     */
+    public int getMonitoredGroups() {
+        return JESMonitor.get().getGroupCount();
+    }
+
+    /**
+     * @return Scheduled JES monitor ticks and timeouts.
+     */
+    public int getScheduledTasks() {
+        return ZOSWaitEngine.get().getScheduledTasks();
+    }
+
+    /**
+     * @return FTP tasks waiting for a worker.
+     */
+    public int getQueueDepth() {
+        return ZOSWaitEngine.get().getQueueDepth();
+    }
+
+    /**
+     * @return Busy workers.
+     */
+    public int getActiveWorkers() {
+        return ZOSWaitEngine.get().getActiveWorkers();
+    }
+
+    /**
+     * @return Worker pool size limit.
+     */
+    public int getMaxWorkers() {
+        return ZOSWaitEngine.get().getMaxWorkers();
+    }
+
+    /**
+     * @return Job work waiting for a job worker.
+     */
+    public int getQueuedJobs() {
+        return ZOSWaitEngine.get().getQueuedJobs();
+    }
+
+    /**
+     * @return Busy job workers.
+     */
+    public int getActiveJobs() {
+        return ZOSWaitEngine.get().getActiveJobs();
+    }
+
+    /**
+     * @return Job worker pool size limit.
+     */
+    public int getMaxJobs() {
+        return ZOSWaitEngine.get().getMaxJobs();
+    }
+
+    /**
+     * @return Spool file transfers in progress.
+     */
+    public int getActiveTransfers() {
+        return ZOSWaitEngine.get().getActiveTransfers();
+    }
+
+    /**
+     * @return Spool file transfers waiting for a thread.
+     */
+    public int getQueuedTransfers() {
+        return ZOSWaitEngine.get().getQueuedTransfers();
+    }
+
+    /**
+     * @return Output buffers spilled to disk since start.
+     */
+    public long getSpills() {
+        return SpillableOutputStream.getSpills();
+    }
+
+    /**
+     * @return Bytes written to spill files since start.
+     */
+    public long getSpilledBytes() {
+        return SpillableOutputStream.getSpilledBytes();
+    }
+
+    /**
+     * @return Spill files currently on disk.
+     */
+    public int getSpillFiles() {
+        return SpillableOutputStream.getSpillFiles();
+    }
+
+    /**
+     * @return FTP session load of the servers connected to so far.
+     */
+    public List<ServerLoad> getServers() {
+        List<ServerLoad> servers = new ArrayList<>();
+        for (ZFTPSessionPool.ServerLimit limit : ZFTPSessionPool.get().getLimits())
+            servers.add(new ServerLoad(limit));
+        return servers;
+    }
+
+    /**
+     * <h2>ZOSConnectorStatistics.ServerLoad</h2>
+     * FTP session figures of one server.
+     */
+    public static final class ServerLoad {
+        private final ZFTPSessionPool.ServerLimit limit;
+
+        ServerLoad(ZFTPSessionPool.ServerLimit limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * @return Server and port.
+         */
+        public String getName() {
+            return this.limit.name;
+        }
+
+        /**
+         * @return Open sessions and limit.
+         */
+        public String getSessions() {
+            return this.limit.getOpen() + " / " + (this.limit.size == 0 ? "unlimited" : String.valueOf(this.limit.size));
+        }
+
+        /**
+         * @return Callers waiting for a session.
+         */
+        public int getQueueLength() {
+            return this.limit.getQueueLength();
+        }
+
+        /**
+         * @return Acquisitions that had to wait.
+         */
+        public long getWaits() {
+            return this.limit.getWaits();
+        }
+
+        /**
+         * @return Average wait in milliseconds.
+         */
+        public long getAverageWaitTime() {
+            long waits = this.limit.getWaits();
+            return (waits == 0) ? 0 : this.limit.getWaitTime() / waits;
+        }
+
+        /**
+         * @return Longest wait in milliseconds.
+         */
+        public long getMaxWaitTime() {
+            return this.limit.getMaxWaitTime();
+        }
+
+        /**
+         * @return Waits given up.
+         */
+        public long getTimeouts() {
+            return this.limit.getTimeouts();
+        }
+
+        /**
+         * @return Circuit state of the server.
+         */
+        public String getCircuit() {
+            ServerHealth health = ZFTPSessionPool.get().getHealth(this.limit.name);
+            if (health == null)
+                return "";
+            return (health.isOpen() ? "open" : "closed") + ", " + health.getFailures() + " failure(s) in a row";
+        }
+
+        /**
+         * @return Times the circuit opened and sessions refused while open.
+         */
+        public String getTrips() {
+            ServerHealth health = ZFTPSessionPool.get().getHealth(this.limit.name);
+            return (health == null) ? "" : health.getTrips() + " / " + health.getRejected();
+        }
+
+        /**
+         * @return Last connect failure, empty if none.
+         */
+        public String getLastError() {
+            ServerHealth health = ZFTPSessionPool.get().getHealth(this.limit.name);
+            return (health == null || health.getLastError() == null) ? "" : health.getLastError();
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import hudson.*;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.BuildStepDescriptor;
+import hudson.tasks.Builder;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
+import jenkins.tasks.SimpleBuildStep;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * <h2>ZOSJobAwaiter</h2>
+ * Build step action waiting for jobs submitted earlier in the build (e.g. by {@link ZOSJobSubmitter} without waiting,
+ * see {@link ZOSJobHandles}), so the build can do other work while they run.
+ * All jobs are waited for through the single {@link JESMonitor} status loop; their logs are retrieved
+ * into the workspace and MaxCC is applied to each of them.
+ * Jobs submitted by the build are looked for on the LPAR they were submitted to, others on the step's server;
+ * awaited jobs are dropped from <code>ZOS_JOB_IDS</code>.
+ *
+ * @see ZFTPConnector#await(String, java.io.OutputStream, boolean)
+ */
+public class ZOSJobAwaiter extends Builder implements SimpleBuildStep {
+    /**
+     * Simple logger.
+     */
+    private static final Logger logger = Logger.getLogger(ZOSJobAwaiter.class.getName());
+    /**
+     * Default job IDs: all jobs submitted by the build so far.
+     */
+    static final String DEFAULT_JOB_IDS = "${ZOS_JOB_IDS}";
+
+    /**
+     * LPAR name or IP address.
+     */
+    private final String server;
+    /**
+     * FTP port for connection
+     */
+    private final int port;
+    /**
+     * Credentials id to be converted to login+pw.
+     */
+    private final String credentialsId;
+    /**
+     * JES job IDs to wait for, comma or space separated, variables allowed.
+     */
+    private final String jobIDs;
+    /**
+     * Time to wait for the jobs to end in minutes. If set to <code>0</code> the build will wait forever.
+     */
+    private final int waitTime;
+    /**
+     * Whether the job logs are to be deleted upon job end.
+     */
+    private final boolean deleteJobFromSpool;
+    /**
+     * Whether the job logs are to be printed to Console.
+     */
+    private final boolean jobLogToConsole;
+    /**
+     * MaxCC to decide that a job ended OK.
+     */
+    private String MaxCC;
+    /**
+     * Whether FTP server is in JESINTERFACELEVEL=1.
+     */
+    private final boolean JESINTERFACELEVEL1;
+    /**
+     * FTP data transfer mode
+     */
+    private final boolean FTPActiveMode;
+    /**
+     * Whether job logs are transferred compressed (MODE Z).
+     */
+    private boolean compression;
+
+    /**
+     * Constructor. Invoked when 'Apply' or 'Save' button is pressed on the project configuration page.
+     *
+     * @param server             LPAR name or IP address.
+     * @param port               FTP port to connect to.
+     * @param credentialsId      Credentials id.
+     * @param jobIDs             JES job IDs, empty for all jobs submitted by the build so far.
+     * @param waitTime           Maximum wait time. If set to <code>0</code> will wait forever.
+     * @param deleteJobFromSpool Whether the job logs will be deleted from the spool after end.
+     * @param jobLogToConsole    Whether the job logs will be printed to console.
+     * @param MaxCC              Maximum allowed CC for a job to be considered OK.
+     * @param JESINTERFACELEVEL1 Is FTP server configured for JESINTERFACELEVEL=1?
+     * @param FTPActiveMode      FTP data transfer mode (true=active, false=passive)
+     */
+    @DataBoundConstructor
+    public ZOSJobAwaiter(
+            String server,
+            int port,
+            String credentialsId,
+            String jobIDs,
+            int waitTime,
+            boolean deleteJobFromSpool,
+            boolean jobLogToConsole,
+            String MaxCC,
+            boolean JESINTERFACELEVEL1,
+            boolean FTPActiveMode) {
+        this.server = server.replaceAll("\\s", "");
+        this.port = port;
+        this.credentialsId = credentialsId;
+        this.jobIDs = (Util.fixEmptyAndTrim(jobIDs) == null) ? DEFAULT_JOB_IDS : jobIDs.trim();
+        this.waitTime = waitTime;
+        this.deleteJobFromSpool = deleteJobFromSpool;
+        this.jobLogToConsole = jobLogToConsole;
+        this.JESINTERFACELEVEL1 = JESINTERFACELEVEL1;
+        this.FTPActiveMode = FTPActiveMode;
+        if (MaxCC == null || MaxCC.isEmpty()) {
+            this.MaxCC = "0000";
+        } else {
+            this.MaxCC = MaxCC;
+            if (this.MaxCC.length() < 4) {
+                this.MaxCC = "000".substring(0, 4 - this.MaxCC.length()) + this.MaxCC;
+            }
+        }
+    }
+
+    /**
+     * Wait for the jobs and retrieve their logs.
+     *
+     * @param run       Current run
+     * @param workspace Current workspace
+     * @param launcher  Current launcher
+     * @param listener  Current listener
+     */
+    @Override
+    public void perform(@Nonnull Run<?, ?> run, @Nonnull FilePath workspace, @Nonnull Launcher launcher, @Nonnull TaskListener listener)
+            throws IOException {
+        // variables to be expanded
+        String _server = this.server;
+        String _MaxCC = this.MaxCC;
+        Set<String> ids = new LinkedHashSet<>();
+
+        String logPrefix = run.getParent().getDisplayName() + " " + run.getId() + ": ";
+        try {
+            logger.info(logPrefix + "will expand variables");
+            EnvVars environment = run.getEnvironment(listener);
+            _server = environment.expand(_server);
+            _MaxCC = environment.expand(_MaxCC);
+            for (String id : environment.expand(this.jobIDs).split("[,\\s]+")) {
+                if (!id.isEmpty() && !id.startsWith("${"))
+                    ids.add(id);
+            }
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            throw new AbortException(e.getMessage());
+        }
+        if (ids.isEmpty()) {
+            throw new AbortException("No z/OS jobs to wait for: " + this.jobIDs);
+        }
+
+        // Get login + pw.
+        DomainRequirement domain = new DomainRequirement();
+        StandardUsernamePasswordCredentials creds = CredentialsProvider.findCredentialById(credentialsId,
+                StandardUsernamePasswordCredentials.class,
+                run, domain);
+        if (creds == null) {
+            throw new AbortException("Cannot resolve credentials: " + credentialsId);
+        }
+
+        // Register all jobs with the JES monitor at once.
+        listener.getLogger().println("Waiting for z/OS job(s) " + String.join(", ", ids));
+        ZOSWaitEngine engine = ZOSWaitEngine.get();
+        ZOSJobHandles handles = run.getAction(ZOSJobHandles.class);
+        ZFTPConnector[] connectors = new ZFTPConnector[ids.size()];
+        String[] servers = new String[ids.size()];
+        JobLogFile[] jobLogs = new JobLogFile[ids.size()];
+        CompletableFuture<?>[] done = new CompletableFuture<?>[ids.size()];
+        boolean[] results = new boolean[ids.size()];
+        int i = 0;
+        try {
+            for (String id : ids) {
+                ZOSJobHandles.Handle handle = (handles == null) ? null : handles.find(id);
+                servers[i] = (handle == null) ? _server : handle.server;
+                ZFTPConnector connector = new ZFTPConnector(servers[i],
+                        this.port,
+                        creds.getUsername(),
+                        creds.getPassword().getPlainText(),
+                        this.JESINTERFACELEVEL1,
+                        logPrefix + id + ": ",
+                        this.FTPActiveMode);
+                connector.setListener(listener);
+                connector.setCompression(this.compression);
+                connector.setWaitTime(this.waitTime);
+                connectors[i] = connector;
+                jobLogs[i] = new JobLogFile(workspace, listener, false);
+                int index = i;
+                done[i] = engine.track(connector.await(id, jobLogs[i].getStream(), this.deleteJobFromSpool))
+                        .exceptionally(e -> {
+                            Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+                            listener.error("Failed to wait for job " + id + ": " + cause);
+                            return false;
+                        })
+                        .thenAccept(result -> {
+                            results[index] = result;
+                            if (handle != null)
+                                handles.awaited(handle);
+                        });
+                i++;
+            }
+            CompletableFuture.allOf(done).get();
+        } catch (InterruptedException | IOException e) {
+            for (int j = 0; j < ids.size(); j++) {
+                if (connectors[j] != null)
+                    connectors[j].cancel();
+                if (jobLogs[j] != null)
+                    jobLogs[j].discard();
+            }
+            if (e instanceof InterruptedException)
+                throw new AbortException("Interrupted");
+            e.printStackTrace();
+            throw new AbortException(e.getMessage());
+        } catch (ExecutionException e) {
+            // Failures are recorded per job.
+        }
+
+        // Save the logs in the order given and report.
+        int failed = 0;
+        for (int j = 0; j < ids.size(); j++) {
+            ZFTPConnector connector = connectors[j];
+            String printableCC = ZOSJobSubmitter.printableCC(connector.getJobCC());
+            FilePath target = ZOSJobSubmitter.jobLogFile(workspace, connector.getJobName(), connector.getJobID(),
+                    printableCC, servers[j], run.getParent().getDisplayName() + " - " + run.getId());
+            try {
+                jobLogs[j].save(target);
+                if (this.jobLogToConsole)
+                    target.copyTo(listener.getLogger());
+            } catch (IOException | InterruptedException e) {
+                jobLogs[j].discard();
+                listener.error("Failed to save job log of " + connector.getJobID() + ": " + e.getMessage());
+            }
+            listener.getLogger().println(ZOSJobSubmitter.report(connector.getJobID(), printableCC));
+            if (!(results[j] && (_MaxCC.compareTo(printableCC) >= 0)))
+                failed++;
+        }
+
+        if (failed > 0) {
+            throw new AbortException(failed + " of " + ids.size() + " z/OS jobs failed (MaxCC " + _MaxCC + ")");
+        }
+    }
+
+    /**
+     * @return <b><code>server</code></b>
+     */
+    public String getServer() {
+        return this.server;
+    }
+
+    /**
+     * @return <b><code>port</code></b>
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * @return credentials id provided.
+     */
+    public String getCredentialsId() {
+        return this.credentialsId;
+    }
+
+    /**
+     * @return job IDs provided.
+     */
+    public String getJobIDs() {
+        return this.jobIDs;
+    }
+
+    /**
+     * @return <b><code>waitTime</code></b>
+     */
+    public int getWaitTime() {
+        return this.waitTime;
+    }
+
+    /**
+     * @return <b><code>deleteJobFromSpool</code></b>
+     */
+    public boolean getDeleteJobFromSpool() {
+        return this.deleteJobFromSpool;
+    }
+
+    /**
+     * @return <b><code>jobLogToConsole</code></b>
+     */
+    public boolean getJobLogToConsole() {
+        return this.jobLogToConsole;
+    }
+
+    /**
+     * @return <b><code>MaxCC</code></b>
+     */
+    public String getMaxCC() {
+        return this.MaxCC;
+    }
+
+    /**
+     * @return <b><code>JESINTERFACELEVEL1</code></b>
+     */
+    public boolean getJESINTERFACELEVEL1() {
+        return this.JESINTERFACELEVEL1;
+    }
+
+    /**
+     * @return <b><code>FTPActiveMode</code></b>
+     */
+    public boolean getFTPActiveMode() {
+        return this.FTPActiveMode;
+    }
+
+    /**
+     * @return Whether transfers are compressed.
+     */
+    public boolean getCompression() {
+        return this.compression;
+    }
+
+    /**
+     * @param compression Whether job logs are transferred compressed (MODE Z).
+     */
+    @DataBoundSetter
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * <h2>ZOSJobAwaiterDescriptor</h2>
+     * Descriptor for ZOSJobAwaiter.
+     */
+    @Extension
+    public static final class ZOSJobAwaiterDescriptor extends BuildStepDescriptor<Builder> {
+        /**
+         * @param value Current server.
+         * @return Whether server name looks OK.
+         */
+        public FormValidation doCheckServer(@QueryParameter String value) {
+            return Jenkins.get().getDescriptorByType(ZOSJobSubmitter.ZOSJobSubmitterDescriptor.class)
+                    .doCheckServer(value);
+        }
+
+        /**
+         * Fill in credentials IDs.
+         *
+         * @param item          parent
+         * @param credentialsId credentials ID
+         * @return filled in credentials IDs
+         */
+        public ListBoxModel doFillCredentialsIdItems(
+                @AncestorInPath Item item,
+                @QueryParameter String credentialsId) {
+            return Jenkins.get().getDescriptorByType(ZOSJobSubmitter.ZOSJobSubmitterDescriptor.class)
+                    .doFillCredentialsIdItems(item, credentialsId);
+        }
+
+        /**
+         * @param item  configuration entity to use permissions from.
+         * @param value Current credentials (or expression/env variable).
+         * @return Whether creds are OK.
+         */
+        public FormValidation doCheckCredentialsId(
+                @AncestorInPath Item item,
+                @QueryParameter String value) {
+            return Jenkins.get().getDescriptorByType(ZOSJobSubmitter.ZOSJobSubmitterDescriptor.class)
+                    .doCheckCredentialsId(item, value);
+        }
+
+        /**
+         * @param value MaxCC provided by user
+         * @return Whether MaxCC is OK to use
+         */
+        public FormValidation doCheckMaxCC(@QueryParameter String value) {
+            if (!value.matches("(\\d{1,4})|(\\s*)"))
+                return FormValidation.error("Value must be 4 decimal digits or empty");
+            return FormValidation.ok();
+        }
+
+        /**
+         * @param aClass Project type
+         * @return Always true
+         */
+        public boolean isApplicable(Class<? extends AbstractProject> aClass) {
+            return true;
+        }
+
+        /**
+         * @return Display name of the build step.
+         */
+        public String getDisplayName() {
+            return "Await z/OS jobs";
+        }
+    }
+}
@@ -0,0 +1,497 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import hudson.*;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.BuildStepDescriptor;
+import hudson.tasks.Builder;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
+import jenkins.tasks.SimpleBuildStep;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * <h2>ZOSJobBatchSubmitter</h2>
+ * Build step action for submitting all JCL files matching a workspace glob.
+ * At most <b><code>parallelism</code></b> jobs are being stored into JES at once (each over its own pooled session);
+ * waiting for all of them is done by the single {@link JESMonitor} status loop and holds no thread.
+ * Every job log is saved to the workspace, a table of CC and duration per job is printed
+ * and the build fails if any job exceeds MaxCC.
+ *
+ * @see ZOSJobSubmitter
+ */
+public class ZOSJobBatchSubmitter extends Builder implements SimpleBuildStep {
+    /**
+     * Simple logger.
+     */
+    private static final Logger logger = Logger.getLogger(ZOSJobBatchSubmitter.class.getName());
+    /**
+     * Default number of jobs stored into JES at once.
+     */
+    static final int DEFAULT_PARALLELISM = 4;
+
+    /**
+     * LPAR name or IP address.
+     */
+    private final String server;
+    /**
+     * FTP port for connection
+     */
+    private final int port;
+    /**
+     * Credentials id to be converted to login+pw.
+     */
+    private final String credentialsId;
+    /**
+     * Ant-style glob of workspace files with JCL texts of the jobs to be submitted.
+     */
+    private final String jobFiles;
+    /**
+     * Time to wait for each job to end in minutes, counted from its own submission. If set to <code>0</code> the build will wait forever.
+     */
+    private final int waitTime;
+    /**
+     * Whether the job logs are to be deleted upon job end.
+     */
+    private final boolean deleteJobFromSpool;
+    /**
+     * MaxCC to decide that a job ended OK.
+     */
+    private String MaxCC;
+    /**
+     * Whether FTP server is in JESINTERFACELEVEL=1.
+     */
+    private final boolean JESINTERFACELEVEL1;
+    /**
+     * FTP data transfer mode
+     */
+    private final boolean FTPActiveMode;
+    /**
+     * Number of jobs stored into JES at once.
+     */
+    private int parallelism = DEFAULT_PARALLELISM;
+    /**
+     * Whether JCL and job logs are transferred compressed (MODE Z).
+     */
+    private boolean compression;
+
+    /**
+     * Constructor. Invoked when 'Apply' or 'Save' button is pressed on the project configuration page.
+     *
+     * @param server             LPAR name or IP address.
+     * @param port               FTP port to connect to.
+     * @param credentialsId      Credentials id.
+     * @param jobFiles           Glob of files with JCL of the jobs to be submitted.
+     * @param waitTime           Maximum wait time for each job. If set to <code>0</code> will wait forever.
+     * @param deleteJobFromSpool Whether the job logs will be deleted from the spool after end.
+     * @param MaxCC              Maximum allowed CC for a job to be considered OK.
+     * @param JESINTERFACELEVEL1 Is FTP server configured for JESINTERFACELEVEL=1?
+     * @param FTPActiveMode      FTP data transfer mode (true=active, false=passive)
+     */
+    @DataBoundConstructor
+    public ZOSJobBatchSubmitter(
+            String server,
+            int port,
+            String credentialsId,
+            String jobFiles,
+            int waitTime,
+            boolean deleteJobFromSpool,
+            String MaxCC,
+            boolean JESINTERFACELEVEL1,
+            boolean FTPActiveMode) {
+        this.server = server.replaceAll("\\s", "");
+        this.port = port;
+        this.credentialsId = credentialsId;
+        this.jobFiles = jobFiles;
+        this.waitTime = waitTime;
+        this.deleteJobFromSpool = deleteJobFromSpool;
+        this.JESINTERFACELEVEL1 = JESINTERFACELEVEL1;
+        this.FTPActiveMode = FTPActiveMode;
+        if (MaxCC == null || MaxCC.isEmpty()) {
+            this.MaxCC = "0000";
+        } else {
+            this.MaxCC = MaxCC;
+            if (this.MaxCC.length() < 4) {
+                this.MaxCC = "000".substring(0, 4 - this.MaxCC.length()) + this.MaxCC;
+            }
+        }
+    }
+
+    /**
+     * Submit the jobs and wait for all of them.
+     *
+     * @param run       Current run
+     * @param workspace Current workspace
+     * @param launcher  Current launcher
+     * @param listener  Current listener
+     * @see ZFTPConnector#storeAsync(java.io.InputStream)
+     * @see ZFTPConnector#await(java.io.OutputStream, boolean)
+     */
+    @Override
+    public void perform(@Nonnull Run<?, ?> run, @Nonnull FilePath workspace, @Nonnull Launcher launcher, @Nonnull TaskListener listener)
+            throws IOException {
+        // variables to be expanded
+        String _server = this.server;
+        String _jobFiles = this.jobFiles;
+        String _MaxCC = this.MaxCC;
+        EnvVars environment;
+
+        String logPrefix = run.getParent().getDisplayName() + " " + run.getId() + ": ";
+        FilePath[] files;
+        try {
+            logger.info(logPrefix + "will expand variables");
+            environment = run.getEnvironment(listener);
+            _server = environment.expand(_server);
+            _jobFiles = environment.expand(_jobFiles);
+            _MaxCC = environment.expand(_MaxCC);
+            files = workspace.list(_jobFiles);
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            throw new AbortException(e.getMessage());
+        }
+        if (files.length == 0) {
+            throw new AbortException("No job files match: " + _jobFiles);
+        }
+        Arrays.sort(files, Comparator.comparing(FilePath::getRemote));
+
+        // Get login + pw.
+        DomainRequirement domain = new DomainRequirement();
+        StandardUsernamePasswordCredentials creds = CredentialsProvider.findCredentialById(credentialsId,
+                StandardUsernamePasswordCredentials.class,
+                run, domain);
+        if (creds == null) {
+            throw new AbortException("Cannot resolve credentials: " + credentialsId);
+        }
+
+        Job[] jobs = new Job[files.length];
+        try {
+            for (int i = 0; i < files.length; i++) {
+                jobs[i] = new Job(files[i], workspace, environment, _server, creds, listener, logPrefix);
+            }
+        } catch (IOException | InterruptedException e) {
+            for (Job job : jobs) {
+                if (job != null)
+                    job.jobLog.discard();
+            }
+            e.printStackTrace();
+            throw new AbortException(e.getMessage());
+        }
+        listener.getLogger().println("Submitting " + jobs.length + " z/OS jobs, " + this.parallelism + " at once");
+
+        // Each job is stored once the job `parallelism` places before it is stored, then waited for.
+        ZOSWaitEngine engine = ZOSWaitEngine.get();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        int parallelism = Math.max(1, this.parallelism);
+        CompletableFuture<?>[] stored = new CompletableFuture<?>[jobs.length];
+        CompletableFuture<?>[] done = new CompletableFuture<?>[jobs.length];
+        for (int i = 0; i < jobs.length; i++) {
+            Job job = jobs[i];
+            CompletableFuture<?> turn = (i < parallelism)
+                    ? CompletableFuture.completedFuture(null)
+                    : stored[i - parallelism].handle((r, e) -> null);
+            CompletableFuture<Boolean> submitted = turn.thenCompose(ignored -> {
+                if (cancelled.get())
+                    return CompletableFuture.completedFuture(false);
+                job.start = System.currentTimeMillis();
+                return job.connector.storeAsync(job.jcl);
+            });
+            stored[i] = submitted;
+            done[i] = engine.track(submitted
+                    .thenCompose(ok -> ok
+                            ? job.connector.await(job.jobLog.getStream(), this.deleteJobFromSpool)
+                            : CompletableFuture.completedFuture(false))
+                    .exceptionally(e -> {
+                        Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+                        listener.error("Failed to process job " + job.name + ": " + cause);
+                        return false;
+                    })
+                    .thenAccept(result -> {
+                        job.result = result;
+                        job.end = System.currentTimeMillis();
+                    }));
+        }
+
+        try {
+            CompletableFuture.allOf(done).get();
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            for (Job job : jobs)
+                job.connector.cancel();
+            // Retrievals in progress still write job logs: let them end before the files go.
+            CompletableFuture.allOf(done).join();
+            for (Job job : jobs)
+                job.jobLog.discard();
+            throw new AbortException("Interrupted");
+        } catch (ExecutionException e) {
+            // Failures are recorded per job.
+        }
+
+        // Save the logs and report.
+        PrintStream console = listener.getLogger();
+        String row = "%-40s %-10s %-10s %-12s %s";
+        console.println(String.format(row, "Job file", "Job ID", "Job name", "CC", "Duration"));
+        int failed = 0;
+        for (Job job : jobs) {
+            String jobID = job.connector.getJobID();
+            String printableCC = ZOSJobSubmitter.printableCC(job.connector.getJobCC());
+            try {
+                job.jobLog.save(ZOSJobSubmitter.jobLogFile(workspace, job.connector.getJobName(), jobID,
+                        printableCC, _server, run.getParent().getDisplayName() + " - " + run.getId()));
+            } catch (IOException | InterruptedException e) {
+                job.jobLog.discard();
+                listener.error("Failed to save job log of " + job.name + ": " + e.getMessage());
+            }
+            boolean ok = job.result && (_MaxCC.compareTo(printableCC) >= 0);
+            if (!ok)
+                failed++;
+            console.println(String.format(row, job.name, jobID, job.connector.getJobName(), printableCC,
+                    (job.start == 0) ? "-" : Util.getTimeSpanString(job.end - job.start)));
+        }
+
+        if (failed > 0) {
+            throw new AbortException(failed + " of " + jobs.length + " z/OS jobs failed (MaxCC " + _MaxCC + ")");
+        }
+    }
+
+    /**
+     * <h2>ZOSJobBatchSubmitter.Job</h2>
+     * A job of the batch: its connector, JCL, job log file and timing.
+     */
+    private final class Job {
+        /**
+         * Workspace-relative name of the JCL file.
+         */
+        final String name;
+        final ZFTPConnector connector;
+        final ByteArrayInputStream jcl;
+        final JobLogFile jobLog;
+        /**
+         * Times the job was submitted and processed, in milliseconds.
+         */
+        volatile long start, end;
+        /**
+         * Whether the job was submitted and its log and RC obtained.
+         */
+        volatile boolean result;
+
+        Job(FilePath file, FilePath workspace, EnvVars environment, String server,
+            StandardUsernamePasswordCredentials creds, TaskListener listener, String logPrefix)
+                throws IOException, InterruptedException {
+            this.name = file.getRemote().substring(workspace.getRemote().length() + 1);
+            this.jcl = new ByteArrayInputStream(environment.expand(file.readToString()).getBytes(StandardCharsets.UTF_8));
+            this.connector = new ZFTPConnector(server,
+                    ZOSJobBatchSubmitter.this.port,
+                    creds.getUsername(),
+                    creds.getPassword().getPlainText(),
+                    ZOSJobBatchSubmitter.this.JESINTERFACELEVEL1,
+                    logPrefix + this.name + ": ",
+                    ZOSJobBatchSubmitter.this.FTPActiveMode);
+            this.connector.setListener(listener);
+            this.connector.setCompression(ZOSJobBatchSubmitter.this.compression);
+            this.connector.setWaitTime(ZOSJobBatchSubmitter.this.waitTime);
+            this.jobLog = new JobLogFile(workspace, listener, false);
+        }
+    }
+
+    /**
+     * @return <b><code>server</code></b>
+     */
+    public String getServer() {
+        return this.server;
+    }
+
+    /**
+     * @return <b><code>port</code></b>
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * @return credentials id provided.
+     */
+    public String getCredentialsId() {
+        return this.credentialsId;
+    }
+
+    /**
+     * @return glob of job files provided.
+     */
+    public String getJobFiles() {
+        return this.jobFiles;
+    }
+
+    /**
+     * @return <b><code>waitTime</code></b>
+     */
+    public int getWaitTime() {
+        return this.waitTime;
+    }
+
+    /**
+     * @return <b><code>deleteJobFromSpool</code></b>
+     */
+    public boolean getDeleteJobFromSpool() {
+        return this.deleteJobFromSpool;
+    }
+
+    /**
+     * @return <b><code>MaxCC</code></b>
+     */
+    public String getMaxCC() {
+        return this.MaxCC;
+    }
+
+    /**
+     * @return <b><code>JESINTERFACELEVEL1</code></b>
+     */
+    public boolean getJESINTERFACELEVEL1() {
+        return this.JESINTERFACELEVEL1;
+    }
+
+    /**
+     * @return <b><code>FTPActiveMode</code></b>
+     */
+    public boolean getFTPActiveMode() {
+        return this.FTPActiveMode;
+    }
+
+    /**
+     * @return Number of jobs stored into JES at once.
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * @param parallelism Number of jobs stored into JES at once.
+     */
+    @DataBoundSetter
+    public void setParallelism(int parallelism) {
+        this.parallelism = (parallelism > 0) ? parallelism : DEFAULT_PARALLELISM;
+    }
+
+    /**
+     * @return Whether transfers are compressed.
+     */
+    public boolean getCompression() {
+        return this.compression;
+    }
+
+    /**
+     * @param compression Whether JCL and job logs are transferred compressed (MODE Z).
+     */
+    @DataBoundSetter
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * <h2>ZOSJobBatchSubmitterDescriptor</h2>
+     * Descriptor for ZOSJobBatchSubmitter.
+     */
+    @Extension
+    public static final class ZOSJobBatchSubmitterDescriptor extends BuildStepDescriptor<Builder> {
+        /**
+         * @param value Current server.
+         * @return Whether server name looks OK.
+         */
+        public FormValidation doCheckServer(@QueryParameter String value) {
+            return Jenkins.get().getDescriptorByType(ZOSJobSubmitter.ZOSJobSubmitterDescriptor.class)
+                    .doCheckServer(value);
+        }
+
+        /**
+         * Fill in credentials IDs.
+         *
+         * @param item          parent
+         * @param credentialsId credentials ID
+         * @return filled in credentials IDs
+         */
+        public ListBoxModel doFillCredentialsIdItems(
+                @AncestorInPath Item item,
+                @QueryParameter String credentialsId) {
+            return Jenkins.get().getDescriptorByType(ZOSJobSubmitter.ZOSJobSubmitterDescriptor.class)
+                    .doFillCredentialsIdItems(item, credentialsId);
+        }
+
+        /**
+         * @param item  configuration entity to use permissions from.
+         * @param value Current credentials (or expression/env variable).
+         * @return Whether creds are OK.
+         */
+        public FormValidation doCheckCredentialsId(
+                @AncestorInPath Item item,
+                @QueryParameter String value) {
+            return Jenkins.get().getDescriptorByType(ZOSJobSubmitter.ZOSJobSubmitterDescriptor.class)
+                    .doCheckCredentialsId(item, value);
+        }
+
+        /**
+         * @param value Current glob of job files.
+         * @return Whether the glob is set.
+         */
+        public FormValidation doCheckJobFiles(@QueryParameter String value) {
+            if (value.trim().length() == 0)
+                return FormValidation.error("Please set job files, e.g. jcl/*.jcl");
+            return FormValidation.ok();
+        }
+
+        /**
+         * @param value Number of jobs stored at once.
+         * @return Whether it's a positive number.
+         */
+        public FormValidation doCheckParallelism(@QueryParameter String value) {
+            if (!value.matches("\\s*[1-9]\\d*\\s*"))
+                return FormValidation.error("Value must be a positive number");
+            return FormValidation.ok();
+        }
+
+        /**
+         * @param value MaxCC provided by user
+         * @return Whether MaxCC is OK to use
+         */
+        public FormValidation doCheckMaxCC(@QueryParameter String value) {
+            if (!value.matches("(\\d{1,4})|(\\s*)"))
+                return FormValidation.error("Value must be 4 decimal digits or empty");
+            return FormValidation.ok();
+        }
+
+        /**
+         * @param aClass Project type
+         * @return Always true
+         */
+        public boolean isApplicable(Class<? extends AbstractProject> aClass) {
+            return true;
+        }
+
+        /**
+         * @return Display name of the build step.
+         */
+        public String getDisplayName() {
+            return "Submit z/OS jobs (batch)";
+        }
+    }
+}
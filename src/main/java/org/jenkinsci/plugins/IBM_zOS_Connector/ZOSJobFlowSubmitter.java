@@ -0,0 +1,583 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import hudson.*;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.BuildStepDescriptor;
+import hudson.tasks.Builder;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
+import jenkins.tasks.SimpleBuildStep;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * <h2>ZOSJobFlowSubmitter</h2>
+ * Build step action for submitting a {@link JobFlow}: a dependency graph of jobs with RC conditions.
+ * Each job is submitted as soon as all its predecessors ended within their conditions, jobs whose predecessors
+ * failed are skipped. At most <b><code>maxJobsPerServer</code></b> jobs of the flow run on one LPAR at once.
+ * Waiting is done by {@link JESMonitor} and holds no thread.
+ * Per-job timings and the critical path of the flow are printed at the end.
+ *
+ * @see ZOSJobSubmitter
+ */
+public class ZOSJobFlowSubmitter extends Builder implements SimpleBuildStep {
+    /**
+     * Simple logger.
+     */
+    private static final Logger logger = Logger.getLogger(ZOSJobFlowSubmitter.class.getName());
+    /**
+     * Default number of jobs of the flow running on one LPAR at once.
+     */
+    static final int DEFAULT_MAX_JOBS_PER_SERVER = 4;
+
+    /**
+     * LPAR name or IP address for jobs not naming their own.
+     */
+    private final String server;
+    /**
+     * FTP port for connection
+     */
+    private final int port;
+    /**
+     * Credentials id to be converted to login+pw.
+     */
+    private final String credentialsId;
+    /**
+     * Flow definition.
+     */
+    private final String flow;
+    /**
+     * Time to wait for each job to end in minutes. If set to <code>0</code> the build will wait forever.
+     */
+    private final int waitTime;
+    /**
+     * Whether the job logs are to be deleted upon job end.
+     */
+    private final boolean deleteJobFromSpool;
+    /**
+     * MaxCC for jobs and for dependencies without own RC condition.
+     */
+    private String MaxCC;
+    /**
+     * Whether FTP server is in JESINTERFACELEVEL=1.
+     */
+    private final boolean JESINTERFACELEVEL1;
+    /**
+     * FTP data transfer mode
+     */
+    private final boolean FTPActiveMode;
+    /**
+     * Number of jobs of the flow running on one LPAR at once.
+     */
+    private int maxJobsPerServer = DEFAULT_MAX_JOBS_PER_SERVER;
+    /**
+     * Whether JCL and job logs are transferred compressed (MODE Z).
+     */
+    private boolean compression;
+
+    /**
+     * Constructor. Invoked when 'Apply' or 'Save' button is pressed on the project configuration page.
+     *
+     * @param server             LPAR name or IP address.
+     * @param port               FTP port to connect to.
+     * @param credentialsId      Credentials id.
+     * @param flow               Flow definition.
+     * @param waitTime           Maximum wait time per job. If set to <code>0</code> will wait forever.
+     * @param deleteJobFromSpool Whether the job logs will be deleted from the spool after end.
+     * @param MaxCC              Maximum allowed CC for a job to be considered OK.
+     * @param JESINTERFACELEVEL1 Is FTP server configured for JESINTERFACELEVEL=1?
+     * @param FTPActiveMode      FTP data transfer mode (true=active, false=passive)
+     */
+    @DataBoundConstructor
+    public ZOSJobFlowSubmitter(
+            String server,
+            int port,
+            String credentialsId,
+            String flow,
+            int waitTime,
+            boolean deleteJobFromSpool,
+            String MaxCC,
+            boolean JESINTERFACELEVEL1,
+            boolean FTPActiveMode) {
+        this.server = server.replaceAll("\\s", "");
+        this.port = port;
+        this.credentialsId = credentialsId;
+        this.flow = flow;
+        this.waitTime = waitTime;
+        this.deleteJobFromSpool = deleteJobFromSpool;
+        this.JESINTERFACELEVEL1 = JESINTERFACELEVEL1;
+        this.FTPActiveMode = FTPActiveMode;
+        if (MaxCC == null || MaxCC.isEmpty()) {
+            this.MaxCC = "0000";
+        } else {
+            this.MaxCC = MaxCC;
+            if (this.MaxCC.length() < 4) {
+                this.MaxCC = "000".substring(0, 4 - this.MaxCC.length()) + this.MaxCC;
+            }
+        }
+    }
+
+    /**
+     * Run the flow.
+     *
+     * @param run       Current run
+     * @param workspace Current workspace
+     * @param launcher  Current launcher
+     * @param listener  Current listener
+     * @see ZFTPConnector#submitAsync(java.io.InputStream, boolean, int, java.io.OutputStream, boolean)
+     */
+    @Override
+    public void perform(@Nonnull Run<?, ?> run, @Nonnull FilePath workspace, @Nonnull Launcher launcher, @Nonnull TaskListener listener)
+            throws IOException {
+        // variables to be expanded
+        String _server = this.server;
+        String _MaxCC = this.MaxCC;
+        JobFlow jobFlow;
+        EnvVars environment;
+
+        String logPrefix = run.getParent().getDisplayName() + " " + run.getId() + ": ";
+        try {
+            logger.info(logPrefix + "will expand variables");
+            environment = run.getEnvironment(listener);
+            _server = environment.expand(_server);
+            _MaxCC = environment.expand(_MaxCC);
+            jobFlow = JobFlow.parse(environment.expand(this.flow));
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            throw new AbortException(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new AbortException("Invalid job flow: " + e.getMessage());
+        }
+
+        // Get login + pw.
+        DomainRequirement domain = new DomainRequirement();
+        StandardUsernamePasswordCredentials creds = CredentialsProvider.findCredentialById(credentialsId,
+                StandardUsernamePasswordCredentials.class,
+                run, domain);
+        if (creds == null) {
+            throw new AbortException("Cannot resolve credentials: " + credentialsId);
+        }
+
+        // Read all JCL up front: a missing file should fail the flow before anything is submitted.
+        Map<JobFlow.Node, Job> jobs = new LinkedHashMap<>();
+        try {
+            for (JobFlow.Node node : jobFlow.getNodes()) {
+                jobs.put(node, new Job(node, workspace, environment,
+                        (node.server != null) ? node.server : _server, creds, listener, logPrefix));
+            }
+        } catch (IOException | InterruptedException e) {
+            jobs.values().forEach(job -> job.jobLog.discard());
+            if (e instanceof FileNotFoundException)
+                throw new AbortException("Job file not found: " + e.getMessage());
+            e.printStackTrace();
+            throw new AbortException(e.getMessage());
+        }
+
+        // Each job waits for its predecessors, then for a slot on its LPAR.
+        Map<String, Slots> slots = new HashMap<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        long flowStart = System.currentTimeMillis();
+        String maxCC = _MaxCC;
+        for (Job job : jobs.values()) {
+            Slots lpar = slots.computeIfAbsent(job.server, s -> new Slots(Math.max(1, this.maxJobsPerServer)));
+            CompletableFuture<?>[] predecessors = job.node.predecessors.stream()
+                    .map(pred -> jobs.get(pred).done)
+                    .toArray(CompletableFuture<?>[]::new);
+            job.done = CompletableFuture.allOf(predecessors).thenCompose(ignored -> {
+                for (JobFlow.Node pred : job.node.predecessors) {
+                    String condition = job.node.after.get(pred.id);
+                    if (!jobs.get(pred).succeeded((condition != null) ? condition : maxCC)) {
+                        job.skippedAfter = pred.id;
+                        return CompletableFuture.completedFuture(null);
+                    }
+                }
+                if (cancelled.get())
+                    return CompletableFuture.completedFuture(null);
+                job.ready = System.currentTimeMillis();
+                return lpar.acquire().thenCompose(slot -> {
+                    if (cancelled.get()) {
+                        lpar.release();
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    job.start = System.currentTimeMillis();
+                    return job.connector.submitAsync(job.jcl, true, this.waitTime, job.jobLog.getStream(), this.deleteJobFromSpool)
+                            .exceptionally(e -> {
+                                Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+                                listener.error("Failed to process job " + job.node.id + ": " + cause);
+                                return false;
+                            })
+                            .thenAccept(result -> {
+                                job.result = result;
+                                job.end = System.currentTimeMillis();
+                                lpar.release();
+                            });
+                });
+            });
+        }
+
+        try {
+            CompletableFuture.allOf(jobs.values().stream().map(job -> job.done).toArray(CompletableFuture<?>[]::new)).get();
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            for (Job job : jobs.values())
+                job.connector.cancel();
+            // Retrievals in progress still write job logs: let them end before the files go.
+            try {
+                CompletableFuture.allOf(jobs.values().stream().map(job -> job.done).toArray(CompletableFuture<?>[]::new)).join();
+            } catch (CompletionException ignored) {
+                // Failures are recorded per job.
+            }
+            for (Job job : jobs.values())
+                job.jobLog.discard();
+            throw new AbortException("Interrupted");
+        } catch (ExecutionException e) {
+            // Failures are recorded per job.
+        }
+
+        // Save the logs and report.
+        PrintStream console = listener.getLogger();
+        String row = "%-12s %-10s %-10s %-12s %-10s %-10s %s";
+        console.println(String.format(row, "Node", "Job ID", "Server", "CC", "Started", "Queued", "Duration"));
+        int failed = 0;
+        for (Job job : jobs.values()) {
+            String printableCC;
+            if (job.start == 0) {
+                printableCC = (job.skippedAfter != null) ? "SKIPPED" : "NOT_RUN";
+                job.jobLog.discard();
+            } else {
+                printableCC = ZOSJobSubmitter.printableCC(job.connector.getJobCC());
+                try {
+                    job.jobLog.save(ZOSJobSubmitter.jobLogFile(workspace, job.connector.getJobName(), job.connector.getJobID(),
+                            printableCC, job.server, run.getParent().getDisplayName() + " - " + run.getId()));
+                } catch (IOException | InterruptedException e) {
+                    job.jobLog.discard();
+                    listener.error("Failed to save job log of " + job.node.id + ": " + e.getMessage());
+                }
+            }
+            if (!job.succeeded(_MaxCC))
+                failed++;
+            console.println(String.format(row, job.node.id, job.connector.getJobID(), job.server, printableCC,
+                    (job.start == 0) ? "-" : "+" + Util.getTimeSpanString(job.start - flowStart),
+                    (job.start == 0) ? "-" : Util.getTimeSpanString(job.start - job.ready),
+                    (job.start == 0) ? (job.skippedAfter != null ? "after " + job.skippedAfter + " failed" : "-")
+                            : Util.getTimeSpanString(job.end - job.start)));
+        }
+        List<JobFlow.Node> criticalPath = jobFlow.criticalPath(node -> jobs.get(node).end);
+        if (!criticalPath.isEmpty()) {
+            long flowEnd = jobs.get(criticalPath.get(criticalPath.size() - 1)).end;
+            console.println("Critical path: "
+                    + criticalPath.stream().map(node -> node.id).collect(Collectors.joining(" -> "))
+                    + " (" + Util.getTimeSpanString(flowEnd - flowStart) + ")");
+        }
+
+        if (failed > 0) {
+            throw new AbortException(failed + " of " + jobs.size() + " z/OS jobs of the flow failed or were skipped (MaxCC " + _MaxCC + ")");
+        }
+    }
+
+    /**
+     * <h2>ZOSJobFlowSubmitter.Job</h2>
+     * Run of a flow node: its connector, JCL, job log file and timing.
+     */
+    private final class Job {
+        final JobFlow.Node node;
+        /**
+         * LPAR the job is submitted to.
+         */
+        final String server;
+        final ZFTPConnector connector;
+        final ByteArrayInputStream jcl;
+        final JobLogFile jobLog;
+        /**
+         * Completes once the job is processed or skipped.
+         */
+        CompletableFuture<?> done;
+        /**
+         * Times predecessors ended, the job was submitted and processed, in milliseconds. <code>0</code> if not reached.
+         */
+        volatile long ready, start, end;
+        /**
+         * Whether the job was submitted and its log and RC obtained.
+         */
+        volatile boolean result;
+        /**
+         * Predecessor that failed its RC condition, <code>null</code> unless skipped.
+         */
+        volatile String skippedAfter;
+
+        Job(JobFlow.Node node, FilePath workspace, EnvVars environment, String server,
+            StandardUsernamePasswordCredentials creds, TaskListener listener, String logPrefix)
+                throws IOException, InterruptedException {
+            this.node = node;
+            this.server = server;
+            this.jcl = new ByteArrayInputStream(environment.expand(workspace.child(node.jobFile).readToString())
+                    .getBytes(StandardCharsets.UTF_8));
+            this.connector = new ZFTPConnector(server,
+                    ZOSJobFlowSubmitter.this.port,
+                    creds.getUsername(),
+                    creds.getPassword().getPlainText(),
+                    ZOSJobFlowSubmitter.this.JESINTERFACELEVEL1,
+                    logPrefix + node.id + ": ",
+                    ZOSJobFlowSubmitter.this.FTPActiveMode);
+            this.connector.setListener(listener);
+            this.connector.setCompression(ZOSJobFlowSubmitter.this.compression);
+            this.jobLog = new JobLogFile(workspace, listener, false);
+        }
+
+        /**
+         * @param maxCC Highest acceptable CC.
+         * @return Whether the job ran and ended with CC not above <b><code>maxCC</code></b>.
+         */
+        boolean succeeded(String maxCC) {
+            return this.result && maxCC.compareTo(ZOSJobSubmitter.printableCC(this.connector.getJobCC())) >= 0;
+        }
+    }
+
+    /**
+     * <h2>ZOSJobFlowSubmitter.Slots</h2>
+     * Jobs of the flow allowed to run on one LPAR at once, handed out in request order.
+     */
+    private static final class Slots {
+        private final int size;
+        private int used;
+        private final Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+
+        Slots(int size) {
+            this.size = size;
+        }
+
+        /**
+         * @return Future completing once a slot is taken.
+         */
+        synchronized CompletableFuture<Void> acquire() {
+            if (this.used < this.size) {
+                this.used++;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> slot = new CompletableFuture<>();
+            this.waiting.add(slot);
+            return slot;
+        }
+
+        /**
+         * Hand the slot over to the next waiting job or free it.
+         */
+        void release() {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = this.waiting.poll();
+                if (next == null) {
+                    this.used--;
+                    return;
+                }
+            }
+            next.complete(null);
+        }
+    }
+
+    /**
+     * @return <b><code>server</code></b>
+     */
+    public String getServer() {
+        return this.server;
+    }
+
+    /**
+     * @return <b><code>port</code></b>
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * @return credentials id provided.
+     */
+    public String getCredentialsId() {
+        return this.credentialsId;
+    }
+
+    /**
+     * @return flow definition provided.
+     */
+    public String getFlow() {
+        return this.flow;
+    }
+
+    /**
+     * @return <b><code>waitTime</code></b>
+     */
+    public int getWaitTime() {
+        return this.waitTime;
+    }
+
+    /**
+     * @return <b><code>deleteJobFromSpool</code></b>
+     */
+    public boolean getDeleteJobFromSpool() {
+        return this.deleteJobFromSpool;
+    }
+
+    /**
+     * @return <b><code>MaxCC</code></b>
+     */
+    public String getMaxCC() {
+        return this.MaxCC;
+    }
+
+    /**
+     * @return <b><code>JESINTERFACELEVEL1</code></b>
+     */
+    public boolean getJESINTERFACELEVEL1() {
+        return this.JESINTERFACELEVEL1;
+    }
+
+    /**
+     * @return <b><code>FTPActiveMode</code></b>
+     */
+    public boolean getFTPActiveMode() {
+        return this.FTPActiveMode;
+    }
+
+    /**
+     * @return Number of jobs of the flow running on one LPAR at once.
+     */
+    public int getMaxJobsPerServer() {
+        return this.maxJobsPerServer;
+    }
+
+    /**
+     * @param maxJobsPerServer Number of jobs of the flow running on one LPAR at once.
+     */
+    @DataBoundSetter
+    public void setMaxJobsPerServer(int maxJobsPerServer) {
+        this.maxJobsPerServer = (maxJobsPerServer > 0) ? maxJobsPerServer : DEFAULT_MAX_JOBS_PER_SERVER;
+    }
+
+    /**
+     * @return Whether transfers are compressed.
+     */
+    public boolean getCompression() {
+        return this.compression;
+    }
+
+    /**
+     * @param compression Whether JCL and job logs are transferred compressed (MODE Z).
+     */
+    @DataBoundSetter
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * <h2>ZOSJobFlowSubmitterDescriptor</h2>
+     * Descriptor for ZOSJobFlowSubmitter.
+     */
+    @Extension
+    public static final class ZOSJobFlowSubmitterDescriptor extends BuildStepDescriptor<Builder> {
+        /**
+         * @param value Current server.
+         * @return Whether server name looks OK.
+         */
+        public FormValidation doCheckServer(@QueryParameter String value) {
+            return Jenkins.get().getDescriptorByType(ZOSJobSubmitter.ZOSJobSubmitterDescriptor.class)
+                    .doCheckServer(value);
+        }
+
+        /**
+         * Fill in credentials IDs.
+         *
+         * @param item          parent
+         * @param credentialsId credentials ID
+         * @return filled in credentials IDs
+         */
+        public ListBoxModel doFillCredentialsIdItems(
+                @AncestorInPath Item item,
+                @QueryParameter String credentialsId) {
+            return Jenkins.get().getDescriptorByType(ZOSJobSubmitter.ZOSJobSubmitterDescriptor.class)
+                    .doFillCredentialsIdItems(item, credentialsId);
+        }
+
+        /**
+         * @param item  configuration entity to use permissions from.
+         * @param value Current credentials (or expression/env variable).
+         * @return Whether creds are OK.
+         */
+        public FormValidation doCheckCredentialsId(
+                @AncestorInPath Item item,
+                @QueryParameter String value) {
+            return Jenkins.get().getDescriptorByType(ZOSJobSubmitter.ZOSJobSubmitterDescriptor.class)
+                    .doCheckCredentialsId(item, value);
+        }
+
+        /**
+         * @param value Current flow definition.
+         * @return Whether the flow parses (variables are not expanded here).
+         */
+        public FormValidation doCheckFlow(@QueryParameter String value) {
+            try {
+                int jobs = JobFlow.parse(value).getNodes().size();
+                return FormValidation.ok(jobs + " job(s)");
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+        }
+
+        /**
+         * @param value Number of jobs running on one LPAR at once.
+         * @return Whether it's a positive number.
+         */
+        public FormValidation doCheckMaxJobsPerServer(@QueryParameter String value) {
+            if (!value.matches("\\s*[1-9]\\d*\\s*"))
+                return FormValidation.error("Value must be a positive number");
+            return FormValidation.ok();
+        }
+
+        /**
+         * @param value MaxCC provided by user
+         * @return Whether MaxCC is OK to use
+         */
+        public FormValidation doCheckMaxCC(@QueryParameter String value) {
+            if (!value.matches("(\\d{1,4})|(\\s*)"))
+                return FormValidation.error("Value must be 4 decimal digits or empty");
+            return FormValidation.ok();
+        }
+
+        /**
+         * @param aClass Project type
+         * @return Always true
+         */
+        public boolean isApplicable(Class<? extends AbstractProject> aClass) {
+            return true;
+        }
+
+        /**
+         * @return Display name of the build step.
+         */
+        public String getDisplayName() {
+            return "Submit z/OS job flow";
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import hudson.EnvVars;
+import hudson.model.EnvironmentContributingAction;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * <h2>ZOSJobHandles</h2>
+ * Jobs submitted by the build without waiting, exported to the following build steps as
+ * <code>ZOS_JOB_ID</code> and <code>ZOS_JOB_NAME</code> (last submitted job)
+ * and <code>ZOS_JOB_IDS</code> (submitted jobs not awaited yet, space separated),
+ * so they can be waited for later by {@link ZOSJobAwaiter}.
+ *
+ * @see ZOSJobSubmitter
+ */
+public final class ZOSJobHandles extends InvisibleAction implements EnvironmentContributingAction {
+    /**
+     * Handles in the order of submission.
+     */
+    private final List<Handle> handles = new ArrayList<>();
+
+    /**
+     * Record submitted job with the run.
+     *
+     * @param run     Current run.
+     * @param server  LPAR the job was submitted to.
+     * @param jobID   JES job ID.
+     * @param jobName JES job name, empty if unknown.
+     */
+    static void add(Run<?, ?> run, String server, String jobID, String jobName) {
+        ZOSJobHandles action;
+        synchronized (run) {
+            action = run.getAction(ZOSJobHandles.class);
+            if (action == null) {
+                action = new ZOSJobHandles();
+                run.addAction(action);
+            }
+        }
+        synchronized (action) {
+            action.handles.add(new Handle(server, jobID, jobName));
+        }
+    }
+
+    /**
+     * Find the most recent handle of the job.
+     *
+     * @param jobID JES job ID.
+     * @return Handle or <code>null</code> if the job wasn't submitted by the build.
+     */
+    synchronized Handle find(String jobID) {
+        for (int i = this.handles.size() - 1; i >= 0; i--) {
+            if (this.handles.get(i).jobID.equals(jobID))
+                return this.handles.get(i);
+        }
+        return null;
+    }
+
+    /**
+     * Drop the job from <code>ZOS_JOB_IDS</code> once it has been waited for.
+     *
+     * @param handle Handle of the job.
+     */
+    synchronized void awaited(Handle handle) {
+        handle.awaited = true;
+    }
+
+    /**
+     * @return Handles in the order of submission.
+     */
+    public synchronized List<Handle> getHandles() {
+        return Collections.unmodifiableList(new ArrayList<>(this.handles));
+    }
+
+    @Override
+    public synchronized void buildEnvironment(Run<?, ?> run, EnvVars env) {
+        if (this.handles.isEmpty())
+            return;
+        Handle last = this.handles.get(this.handles.size() - 1);
+        env.put("ZOS_JOB_ID", last.jobID);
+        env.put("ZOS_JOB_NAME", last.jobName);
+        env.put("ZOS_JOB_IDS", this.handles.stream().filter(handle -> !handle.awaited).map(handle -> handle.jobID)
+                .collect(Collectors.joining(" ")));
+    }
+
+    /**
+     * <h2>ZOSJobHandles.Handle</h2>
+     * Submitted job.
+     */
+    public static final class Handle {
+        /**
+         * LPAR the job was submitted to.
+         */
+        public final String server;
+        /**
+         * JES job ID.
+         */
+        public final String jobID;
+        /**
+         * JES job name, empty if unknown.
+         */
+        public final String jobName;
+        /**
+         * Whether the job has been waited for, guarded by the owning action.
+         */
+        private boolean awaited;
+
+        Handle(String server, String jobID, String jobName) {
+            this.server = server;
+            this.jobID = jobID;
+            this.jobName = jobName;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.util.Secret;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+/**
+ * <h2>ZOSJobSubmission</h2>
+ * Submit/wait/retrieve cycle of {@link ZOSJobSubmitter} for a single build: reads the JCL from the workspace,
+ * runs {@link ZFTPConnector} and saves the job log next to it.
+ * Runs either on the controller against a (remote) workspace or, sent over as a file callable,
+ * on the agent holding the workspace: then the mainframe traffic and the job log never pass through the controller,
+ * only the {@link Outcome} comes back.
+ *
+ * @see ZOSJobSubmitter#perform
+ */
+final class ZOSJobSubmission extends MasterToSlaveFileCallable<ZOSJobSubmission.Outcome> {
+    private static final long serialVersionUID = 1L;
+    /**
+     * Logger.
+     */
+    private static final Logger logger = Logger.getLogger(ZOSJobSubmission.class.getName());
+
+    private final String server;
+    private final int port;
+    private final String userID;
+    private final Secret password;
+    private final String jobFile;
+    private final EnvVars environment;
+    private final TaskListener listener;
+    private final String logPrefix;
+    /**
+     * Project name and build number for the job log file name.
+     */
+    private final String runName;
+    private final boolean wait;
+    private final int waitTime;
+    private final boolean deleteJobFromSpool;
+    private final boolean jobLogToConsole;
+    private final boolean JESINTERFACELEVEL1;
+    private final boolean FTPActiveMode;
+    private final boolean reuseSession;
+    private final int initialPollInterval;
+    private final int maxPollInterval;
+    private final boolean predictivePolling;
+    private final String spoolFiles;
+    private final boolean parallelRetrieval;
+    private final boolean compression;
+    private final boolean liveTail;
+
+    /**
+     * Constructor.
+     *
+     * @param submitter   Build step with the options.
+     * @param server      LPAR name or IP address, variables expanded.
+     * @param jobFile     Path to JCL in the workspace, variables expanded.
+     * @param userID      UserID.
+     * @param password    User password.
+     * @param environment Variables to expand in the JCL.
+     * @param listener    Build listener.
+     * @param logPrefix   Log prefix.
+     * @param runName     Project name and build number for the job log file name.
+     */
+    ZOSJobSubmission(ZOSJobSubmitter submitter, String server, String jobFile, String userID, Secret password,
+                     EnvVars environment, TaskListener listener, String logPrefix, String runName) {
+        this.server = server;
+        this.port = submitter.getPort();
+        this.userID = userID;
+        this.password = password;
+        this.jobFile = jobFile;
+        this.environment = environment;
+        this.listener = listener;
+        this.logPrefix = logPrefix;
+        this.runName = runName;
+        this.wait = submitter.getWait();
+        this.waitTime = submitter.getWaitTime();
+        this.deleteJobFromSpool = submitter.getDeleteJobFromSpool();
+        this.jobLogToConsole = submitter.getJobLogToConsole();
+        this.JESINTERFACELEVEL1 = submitter.getJESINTERFACELEVEL1();
+        this.FTPActiveMode = submitter.getFTPActiveMode();
+        this.reuseSession = submitter.getReuseSession();
+        this.initialPollInterval = submitter.getInitialPollInterval();
+        this.maxPollInterval = submitter.getMaxPollInterval();
+        this.predictivePolling = submitter.getPredictivePolling();
+        this.spoolFiles = submitter.getSpoolFiles();
+        this.parallelRetrieval = submitter.getParallelRetrieval();
+        this.compression = submitter.getCompression();
+        this.liveTail = submitter.getLiveTail();
+    }
+
+    /**
+     * Run on the agent holding the workspace.
+     *
+     * @param workspace Workspace directory.
+     * @param channel   Channel to the controller.
+     * @return Outcome of the job.
+     * @throws IOException          if the JCL couldn't be read or the job log saved.
+     * @throws InterruptedException if interrupted.
+     */
+    @Override
+    public Outcome invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        return this.submit(new FilePath(workspace));
+    }
+
+    /**
+     * Submit the job, wait for it (if requested) and save its log in the workspace.
+     *
+     * @param workspace Workspace, local or remote.
+     * @return Outcome of the job.
+     * @throws IOException          if the JCL couldn't be read or the job log saved.
+     * @throws InterruptedException if interrupted.
+     */
+    Outcome submit(FilePath workspace) throws IOException, InterruptedException {
+        // Get connector and let it connect while the JCL is read.
+        ZFTPConnector zFTPConnector = new ZFTPConnector(this.server,
+                this.port,
+                this.userID,
+                this.password.getPlainText(),
+                this.JESINTERFACELEVEL1,
+                this.logPrefix,
+                this.FTPActiveMode);
+        zFTPConnector.setListener(this.listener);
+        zFTPConnector.setReuseSession(this.reuseSession);
+        zFTPConnector.setPollingStrategy(new PollingStrategy(this.initialPollInterval, this.maxPollInterval, this.predictivePolling));
+        zFTPConnector.setSpoolFiles(ZOSJobSubmitter.spoolFileNames(this.spoolFiles));
+        zFTPConnector.setParallelRetrieval(this.parallelRetrieval);
+        zFTPConnector.setCompression(this.compression);
+        zFTPConnector.setLiveTail(this.liveTail);
+        zFTPConnector.warmUp();
+
+        // Read the JCL + expand.
+        String inputJCL;
+        try {
+            inputJCL = workspace.child(this.jobFile).readToString();
+        } catch (FileNotFoundException e) {
+            zFTPConnector.close();
+            throw new AbortException("Job file not found: ./" + this.jobFile);
+        } catch (IOException | InterruptedException e) {
+            zFTPConnector.close();
+            throw e;
+        }
+        inputJCL = this.environment.expand(inputJCL);
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(inputJCL.getBytes(StandardCharsets.UTF_8));
+
+        // Prepare the output stream: job log goes straight to the workspace (and console, unless tailed there).
+        JobLogFile jobLog = null;
+        if (this.wait) {
+            try {
+                jobLog = new JobLogFile(workspace, this.listener, this.jobLogToConsole && !zFTPConnector.tailsJobLog());
+            } catch (IOException | InterruptedException e) {
+                zFTPConnector.close();
+                throw e;
+            }
+        }
+        OutputStream outputStream = (jobLog != null) ? jobLog.getStream() : null;
+
+        // Submit the job.
+        boolean result = zFTPConnector.submit(inputStream, this.wait, this.waitTime, outputStream, this.deleteJobFromSpool, this.listener);
+
+        // Get CC.
+        String printableCC = ZOSJobSubmitter.printableCC(zFTPConnector.getJobCC());
+
+        // Print the info about the job
+        logger.info("Job [" + zFTPConnector.getJobID() + "] processing finished.");
+        if (this.wait) {
+            this.listener.getLogger().println(ZOSJobSubmitter.report(zFTPConnector.getJobID(), printableCC));
+        } else {
+            this.listener.getLogger().println("Job [" + zFTPConnector.getJobID() + "] processing finished. Skip waiting.");
+        }
+
+        // If wait was requested save the job log under its final name.
+        if (jobLog != null) {
+            try {
+                jobLog.save(ZOSJobSubmitter.jobLogFile(workspace, zFTPConnector.getJobName(), zFTPConnector.getJobID(),
+                        printableCC, this.server, this.runName));
+            } catch (IOException | InterruptedException e) {
+                jobLog.discard();
+                throw e;
+            }
+        }
+        // Without waiting JES hasn't been asked for the job name: take it from the JOB statement.
+        String jobName = zFTPConnector.getJobName();
+        if (jobName == null || jobName.isEmpty())
+            jobName = ZOSJobSubmitter.jobName(inputJCL);
+        return new Outcome(result, printableCC, zFTPConnector.getJobID(), jobName);
+    }
+
+    /**
+     * <h2>ZOSJobSubmission.Outcome</h2>
+     * What the build needs to know about the job.
+     */
+    static final class Outcome implements Serializable {
+        private static final long serialVersionUID = 1L;
+        /**
+         * Whether the job was submitted (and its log and RC obtained, if waited for).
+         */
+        final boolean result;
+        /**
+         * Job CC without whitespace, empty string if unknown.
+         */
+        final String printableCC;
+        /**
+         * JES job ID, empty if not submitted.
+         */
+        final String jobID;
+        /**
+         * JES job name, empty if unknown.
+         */
+        final String jobName;
+
+        Outcome(boolean result, String printableCC, String jobID, String jobName) {
+            this.result = result;
+            this.printableCC = printableCC;
+            this.jobID = jobID;
+            this.jobName = jobName;
+        }
+    }
+}
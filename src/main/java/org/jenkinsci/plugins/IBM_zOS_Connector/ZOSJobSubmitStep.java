@@ -0,0 +1,701 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
+import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <h2>ZOSJobSubmitStep</h2>
+ * Pipeline step submitting JCL job and waiting for its completion without holding a thread:
+ * the job is tracked by {@link JESMonitor} and the step is resumed by its callback.
+ * FTP work runs on {@link ZOSWaitEngine} job workers.
+ * Job ID is kept in the step state, so waiting continues after controller restart.
+ * JCL is read from a workspace file or given inline; with inline JCL the step runs outside of <code>node</code>
+ * too, the job log is then kept with the run. Returns job CC.
+ *
+ * @see ZOSJobSubmitter
+ */
+public class ZOSJobSubmitStep extends Step implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * LPAR name or IP address.
+     */
+    private final String server;
+    /**
+     * FTP port for connection
+     */
+    private final int port;
+    /**
+     * Credentials id to be converted to login+pw.
+     */
+    private final String credentialsId;
+    /**
+     * Path to workspace file with JCL text of the job to be submitted.
+     */
+    private final String jobFile;
+    /**
+     * JCL text of the job, submitted instead of <code>jobFile</code> if set.
+     */
+    private String jcl;
+    /**
+     * Time to wait for the job to end in minutes. If set to <code>0</code> the step will wait forever.
+     */
+    private int waitTime;
+    /**
+     * Whether the job log is to be deleted upon job end.
+     */
+    private boolean deleteJobFromSpool;
+    /**
+     * Whether the job log is to be printed to Console.
+     */
+    private boolean jobLogToConsole;
+    /**
+     * MaxCC to decide that job ended OK.
+     */
+    private String MaxCC = "0000";
+    /**
+     * Whether FTP server is in JESINTERFACELEVEL=1.
+     */
+    private boolean JESINTERFACELEVEL1;
+    /**
+     * FTP data transfer mode
+     */
+    private boolean FTPActiveMode;
+    /**
+     * First JES poll delay in milliseconds.
+     */
+    private int initialPollInterval = PollingStrategy.DEFAULT_INITIAL_INTERVAL;
+    /**
+     * JES poll delay ceiling in seconds.
+     */
+    private int maxPollInterval = PollingStrategy.DEFAULT_MAX_INTERVAL;
+    /**
+     * Whether past durations of the job are used to predict its end.
+     */
+    private boolean predictivePolling;
+    /**
+     * DD, step or procedure step names of spool files to retrieve (comma or space separated), empty for the whole job log.
+     */
+    private String spoolFiles;
+    /**
+     * Whether big job logs are retrieved as separate spool files in parallel.
+     */
+    private boolean parallelRetrieval;
+    /**
+     * Whether JCL and job log are transferred compressed (MODE Z).
+     */
+    private boolean compression;
+    /**
+     * Whether spool files of the running job are tailed into the console.
+     */
+    private boolean liveTail;
+
+    /**
+     * Constructor.
+     *
+     * @param server        LPAR name or IP address.
+     * @param port          FTP port to connect to.
+     * @param credentialsId Credentials id.
+     * @param jobFile       Workspace file with JCL of the job to be submitted, may be empty with inline <code>jcl</code>.
+     */
+    @DataBoundConstructor
+    public ZOSJobSubmitStep(String server, int port, String credentialsId, String jobFile) {
+        this.server = server.replaceAll("\\s", "");
+        this.port = port;
+        this.credentialsId = credentialsId;
+        this.jobFile = Util.fixEmptyAndTrim(jobFile);
+    }
+
+    @Override
+    public StepExecution start(StepContext context) {
+        return new Execution(this, context);
+    }
+
+    /**
+     * @return LPAR name or IP address.
+     */
+    public String getServer() {
+        return this.server;
+    }
+
+    /**
+     * @return FTP port to connect to.
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * @return Credentials id.
+     */
+    public String getCredentialsId() {
+        return this.credentialsId;
+    }
+
+    /**
+     * @return Workspace file with JCL of the job.
+     */
+    public String getJobFile() {
+        return this.jobFile;
+    }
+
+    /**
+     * @return JCL text of the job, <code>null</code> to read <code>jobFile</code>.
+     */
+    public String getJcl() {
+        return this.jcl;
+    }
+
+    /**
+     * @param jcl JCL text of the job, submitted instead of <code>jobFile</code>. Doesn't need a workspace.
+     */
+    @DataBoundSetter
+    public void setJcl(String jcl) {
+        this.jcl = Util.fixEmptyAndTrim(jcl);
+    }
+
+    /**
+     * @return Maximum wait time in minutes.
+     */
+    public int getWaitTime() {
+        return this.waitTime;
+    }
+
+    /**
+     * @param waitTime Maximum wait time in minutes. If set to <code>0</code> will wait forever.
+     */
+    @DataBoundSetter
+    public void setWaitTime(int waitTime) {
+        this.waitTime = waitTime;
+    }
+
+    /**
+     * @return Whether the job log is deleted from spool upon job end.
+     */
+    public boolean getDeleteJobFromSpool() {
+        return this.deleteJobFromSpool;
+    }
+
+    /**
+     * @param deleteJobFromSpool Whether the job log is deleted from spool upon job end.
+     */
+    @DataBoundSetter
+    public void setDeleteJobFromSpool(boolean deleteJobFromSpool) {
+        this.deleteJobFromSpool = deleteJobFromSpool;
+    }
+
+    /**
+     * @return Whether the job log is printed to console.
+     */
+    public boolean getJobLogToConsole() {
+        return this.jobLogToConsole;
+    }
+
+    /**
+     * @param jobLogToConsole Whether the job log is printed to console.
+     */
+    @DataBoundSetter
+    public void setJobLogToConsole(boolean jobLogToConsole) {
+        this.jobLogToConsole = jobLogToConsole;
+    }
+
+    /**
+     * @return Maximum allowed CC for job to be considered OK.
+     */
+    public String getMaxCC() {
+        return this.MaxCC;
+    }
+
+    /**
+     * @param MaxCC Maximum allowed CC for job to be considered OK.
+     */
+    @DataBoundSetter
+    public void setMaxCC(String MaxCC) {
+        if (MaxCC == null || MaxCC.isEmpty()) {
+            this.MaxCC = "0000";
+        } else {
+            this.MaxCC = MaxCC;
+            if (this.MaxCC.length() < 4) {
+                this.MaxCC = "000".substring(0, 4 - this.MaxCC.length()) + this.MaxCC;
+            }
+        }
+    }
+
+    /**
+     * @return Whether FTP server is configured for JESINTERFACELEVEL=1.
+     */
+    public boolean getJESINTERFACELEVEL1() {
+        return this.JESINTERFACELEVEL1;
+    }
+
+    /**
+     * @param JESINTERFACELEVEL1 Is FTP server configured for JESINTERFACELEVEL=1?
+     */
+    @DataBoundSetter
+    public void setJESINTERFACELEVEL1(boolean JESINTERFACELEVEL1) {
+        this.JESINTERFACELEVEL1 = JESINTERFACELEVEL1;
+    }
+
+    /**
+     * @return FTP data transfer mode (true=active, false=passive).
+     */
+    public boolean getFTPActiveMode() {
+        return this.FTPActiveMode;
+    }
+
+    /**
+     * @param FTPActiveMode FTP data transfer mode (true=active, false=passive).
+     */
+    @DataBoundSetter
+    public void setFTPActiveMode(boolean FTPActiveMode) {
+        this.FTPActiveMode = FTPActiveMode;
+    }
+
+    /**
+     * @return First JES poll delay in milliseconds.
+     */
+    public int getInitialPollInterval() {
+        return this.initialPollInterval;
+    }
+
+    /**
+     * @param initialPollInterval First JES poll delay in milliseconds.
+     */
+    @DataBoundSetter
+    public void setInitialPollInterval(int initialPollInterval) {
+        this.initialPollInterval = initialPollInterval;
+    }
+
+    /**
+     * @return JES poll delay ceiling in seconds.
+     */
+    public int getMaxPollInterval() {
+        return this.maxPollInterval;
+    }
+
+    /**
+     * @param maxPollInterval JES poll delay ceiling in seconds.
+     */
+    @DataBoundSetter
+    public void setMaxPollInterval(int maxPollInterval) {
+        this.maxPollInterval = maxPollInterval;
+    }
+
+    /**
+     * @return Whether past durations of the job are used to predict its end.
+     */
+    public boolean getPredictivePolling() {
+        return this.predictivePolling;
+    }
+
+    /**
+     * @param predictivePolling Whether past durations of the job are used to predict its end.
+     */
+    @DataBoundSetter
+    public void setPredictivePolling(boolean predictivePolling) {
+        this.predictivePolling = predictivePolling;
+    }
+
+    /**
+     * @return DD, step or procedure step names of spool files to retrieve.
+     */
+    public String getSpoolFiles() {
+        return this.spoolFiles;
+    }
+
+    /**
+     * @param spoolFiles DD, step or procedure step names of spool files to retrieve (comma or space separated),
+     *                   empty for the whole job log.
+     */
+    @DataBoundSetter
+    public void setSpoolFiles(String spoolFiles) {
+        this.spoolFiles = Util.fixEmptyAndTrim(spoolFiles);
+    }
+
+    /**
+     * @return Whether big job logs are retrieved as separate spool files in parallel.
+     */
+    public boolean getParallelRetrieval() {
+        return this.parallelRetrieval;
+    }
+
+    /**
+     * @param parallelRetrieval Whether big job logs are retrieved as separate spool files in parallel.
+     */
+    @DataBoundSetter
+    public void setParallelRetrieval(boolean parallelRetrieval) {
+        this.parallelRetrieval = parallelRetrieval;
+    }
+
+    /**
+     * @return Whether JCL and job log are transferred compressed (MODE Z).
+     */
+    public boolean getCompression() {
+        return this.compression;
+    }
+
+    /**
+     * @param compression Whether JCL and job log are transferred compressed (MODE Z).
+     */
+    @DataBoundSetter
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * @return Whether spool files of the running job are tailed into the console.
+     */
+    public boolean getLiveTail() {
+        return this.liveTail;
+    }
+
+    /**
+     * @param liveTail Whether spool files of the running job are tailed into the console.
+     */
+    @DataBoundSetter
+    public void setLiveTail(boolean liveTail) {
+        this.liveTail = liveTail;
+    }
+
+    /**
+     * <h2>ZOSJobSubmitStep.Execution</h2>
+     * Submits the job on an engine job worker, registers it with JES monitor and completes the step from the monitor callback.
+     * FTP work is done outside of the CPS VM thread; nothing blocks while the job is in JES.
+     */
+    private static final class Execution extends StepExecution {
+        private static final long serialVersionUID = 1L;
+
+        private final ZOSJobSubmitStep step;
+        /**
+         * JES job ID once submitted. Survives controller restart.
+         */
+        private volatile String jobID;
+        /**
+         * Time to give up waiting, <code>0</code> to wait forever.
+         */
+        private long deadline;
+        /**
+         * Connector of the current controller session.
+         */
+        private transient ZFTPConnector connector;
+        /**
+         * Current JES monitor registration.
+         */
+        private transient volatile JESMonitor.Watch watch;
+        /**
+         * Whether the step was stopped (aborted).
+         */
+        private transient volatile boolean stopped;
+
+        Execution(ZOSJobSubmitStep step, StepContext context) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        public boolean start() {
+            ZOSWaitEngine.get().jobs().execute(() -> {
+                try {
+                    this.submit();
+                } catch (Exception e) {
+                    this.getContext().onFailure(e);
+                }
+            });
+            return false;
+        }
+
+        @Override
+        public void stop(Throwable cause) {
+            this.stopped = true;
+            JESMonitor.Watch watch = this.watch;
+            if (watch != null)
+                watch.future.cancel(false);
+            // Stop the live tail and anything else the connector still runs for the job.
+            ZFTPConnector connector = this.connector;
+            if (connector != null)
+                connector.cancel();
+            this.getContext().onFailure(cause);
+        }
+
+        @Override
+        public void onResume() {
+            if (this.jobID == null) {
+                this.getContext().onFailure(new AbortException("Controller restarted while z/OS job was being submitted, its state is unknown"));
+                return;
+            }
+            ZOSWaitEngine.get().jobs().execute(() -> {
+                try {
+                    this.getContext().get(TaskListener.class).getLogger().println("Resuming wait for z/OS job [" + this.jobID + "]");
+                    this.connector = this.connector();
+                    // The job was in JES before the restart: if it's gone meanwhile, there's nothing to wait for.
+                    this.await(true);
+                } catch (Exception e) {
+                    this.getContext().onFailure(e);
+                }
+            });
+        }
+
+        @Override
+        public String getStatus() {
+            return (this.jobID == null) ? "submitting z/OS job" : "waiting for z/OS job [" + this.jobID + "]";
+        }
+
+        /**
+         * Read JCL, submit it and start waiting once submitted.
+         *
+         * @throws Exception if the job could not be read or credentials resolved.
+         */
+        private void submit() throws Exception {
+            StepContext context = this.getContext();
+            // Neither is required: inline JCL needs no workspace, and there's nothing to expand without environment.
+            FilePath workspace = context.get(FilePath.class);
+            EnvVars environment = context.get(EnvVars.class);
+            if (this.step.jcl == null && workspace == null)
+                throw new AbortException("Job file ./" + this.step.jobFile + " needs a workspace: run the step inside node or pass the JCL as jcl");
+            if (this.step.jcl == null && this.step.jobFile == null)
+                throw new AbortException("Either jobFile or jcl must be given");
+            // Let the connector connect while the JCL is read.
+            this.connector = this.connector();
+            this.connector.warmUp();
+            String inputJCL;
+            try {
+                inputJCL = (this.step.jcl != null) ? this.step.jcl : workspace.child(this.step.jobFile).readToString();
+            } catch (FileNotFoundException e) {
+                this.connector.close();
+                throw new AbortException("Job file not found: ./" + this.step.jobFile);
+            } catch (IOException | InterruptedException e) {
+                this.connector.close();
+                throw e;
+            }
+            if (environment != null)
+                inputJCL = environment.expand(inputJCL);
+
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(inputJCL.getBytes(StandardCharsets.UTF_8));
+            this.connector.submitAsync(inputStream, false, 0, null, false).whenComplete((submitted, error) -> {
+                try {
+                    if (this.stopped) {
+                        // stop() already completed the step, the job (if submitted) is not waited for.
+                        return;
+                    }
+                    if (error != null) {
+                        context.onFailure(error);
+                    } else if (!submitted) {
+                        context.onFailure(new AbortException("z/OS job failed with CC " + ZOSJobSubmitter.printableCC(this.connector.getJobCC())));
+                    } else {
+                        this.deadline = (this.step.waitTime > 0) ? System.currentTimeMillis() + this.step.waitTime * 60L * 1000 : 0;
+                        this.jobID = this.connector.getJobID();
+                        context.saveState();
+                        this.await(false);
+                    }
+                } catch (RuntimeException e) {
+                    // Nobody would ever complete the step otherwise.
+                    context.onFailure(e);
+                }
+            });
+        }
+
+        /**
+         * @return Connector for the step with credentials resolved in the context of the run.
+         * @throws Exception if credentials can't be resolved.
+         */
+        private ZFTPConnector connector() throws Exception {
+            StepContext context = this.getContext();
+            Run<?, ?> run = context.get(Run.class);
+            StandardUsernamePasswordCredentials creds = CredentialsProvider.findCredentialById(this.step.credentialsId,
+                    StandardUsernamePasswordCredentials.class,
+                    run, new DomainRequirement());
+            if (creds == null) {
+                throw new AbortException("Cannot resolve credentials: " + this.step.credentialsId);
+            }
+            ZFTPConnector connector = new ZFTPConnector(this.step.server,
+                    this.step.port,
+                    creds.getUsername(),
+                    creds.getPassword().getPlainText(),
+                    this.step.JESINTERFACELEVEL1,
+                    run.getParent().getDisplayName() + " " + run.getId() + ": ",
+                    this.step.FTPActiveMode);
+            connector.setListener(context.get(TaskListener.class));
+            connector.setPollingStrategy(new PollingStrategy(this.step.initialPollInterval, this.step.maxPollInterval, this.step.predictivePolling));
+            connector.setSpoolFiles(ZOSJobSubmitter.spoolFileNames(this.step.spoolFiles));
+            connector.setParallelRetrieval(this.step.parallelRetrieval);
+            connector.setCompression(this.step.compression);
+            connector.setLiveTail(this.step.liveTail);
+            return connector;
+        }
+
+        /**
+         * Register the job with JES monitor and arrange for the step to complete when it's done.
+         *
+         * @param listed Whether the job is known to be in JES already, so that it fails at once if it's not listed.
+         */
+        private void await(boolean listed) {
+            ZOSWaitEngine engine = ZOSWaitEngine.get();
+            JESMonitor.Watch watch = this.connector.watch(this.jobID, listed);
+            this.watch = watch;
+            if (this.stopped) {
+                // Stopped while registering: stop() may have missed the watch.
+                this.connector.cancel();
+                return;
+            }
+            if (this.deadline != 0) {
+                engine.timeout(watch.future, this.deadline - System.currentTimeMillis());
+            }
+            engine.track(watch.future).whenCompleteAsync((entry, error) -> this.finish(watch, error), engine.jobs());
+        }
+
+        /**
+         * Fetch job log and RC, then complete the step.
+         *
+         * @param watch Completed watch.
+         * @param error Failure of the watch if any.
+         */
+        private void finish(JESMonitor.Watch watch, Throwable error) {
+            if (this.stopped)
+                return;
+            StepContext context = this.getContext();
+            try {
+                TaskListener listener = context.get(TaskListener.class);
+                if (error instanceof TimeoutException) {
+                    this.report(listener, false, "WAIT_ERROR");
+                    return;
+                } else if (error != null) {
+                    listener.error("Failed to check job [" + this.jobID + "] state: " + error.getMessage());
+                    this.report(listener, false, "CHECK_JOB_AVAILABILITY_IO_ERROR");
+                    return;
+                }
+                // Job log goes straight to the workspace (and console), or to the run directory outside of node.
+                Run<?, ?> run = context.get(Run.class);
+                FilePath workspace = context.get(FilePath.class);
+                FilePath target = (workspace != null) ? workspace : new FilePath(run.getRootDir());
+                JobLogFile jobLog = new JobLogFile(target, listener, this.step.jobLogToConsole && !this.connector.tailsJobLog());
+                this.connector.complete(watch, jobLog.getStream(), this.deadline, this.step.deleteJobFromSpool).whenComplete((result, e) -> {
+                    if (this.stopped) {
+                        // Retrieval given up by stop(), which already completed the step.
+                        jobLog.discard();
+                        return;
+                    }
+                    if (e != null) {
+                        jobLog.discard();
+                        context.onFailure((e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e);
+                        return;
+                    }
+                    try {
+                        String printableCC = ZOSJobSubmitter.printableCC(this.connector.getJobCC());
+                        try {
+                            jobLog.save(ZOSJobSubmitter.jobLogFile(target, this.connector.getJobName(), this.connector.getJobID(),
+                                    printableCC, this.step.server, run.getParent().getDisplayName() + " - " + run.getId()));
+                        } catch (IOException | InterruptedException x) {
+                            jobLog.discard();
+                            throw x;
+                        }
+                        this.report(listener, result, printableCC);
+                    } catch (Exception x) {
+                        context.onFailure(x);
+                    }
+                });
+            } catch (Exception e) {
+                context.onFailure(e);
+            }
+        }
+
+        /**
+         * Print the job outcome and complete the step.
+         *
+         * @param listener    Build listener.
+         * @param result      Whether job log and RC were obtained.
+         * @param printableCC Job CC as printed.
+         * @throws AbortException if the job failed or its CC is over the limit.
+         */
+        private void report(TaskListener listener, boolean result, String printableCC) throws AbortException {
+            listener.getLogger().println(ZOSJobSubmitter.report(this.jobID, printableCC));
+            if (!(result && (this.step.MaxCC.compareTo(printableCC) >= 0))) {
+                throw new AbortException("z/OS job failed with CC " + printableCC);
+            }
+            this.getContext().onSuccess(printableCC);
+        }
+    }
+
+    /**
+     * <h2>ZOSJobSubmitStep.DescriptorImpl</h2>
+     * Descriptor for {@link ZOSJobSubmitStep}.
+     */
+    @Extension
+    @Symbol("zosJobSubmit")
+    public static final class DescriptorImpl extends StepDescriptor {
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return new HashSet<>(Arrays.asList(Run.class, TaskListener.class));
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "zosJobSubmit";
+        }
+
+        /**
+         * Get printable name.
+         *
+         * @return Printable name for snippet generator.
+         */
+        @Override
+        public String getDisplayName() {
+            return "Submit z/OS job and wait for it without blocking an executor";
+        }
+
+        /**
+         * Fill in credentials IDs.
+         *
+         * @param item          parent
+         * @param credentialsId credentials ID
+         * @return filled in credentials IDs
+         */
+        public ListBoxModel doFillCredentialsIdItems(
+                @AncestorInPath Item item,
+                @QueryParameter String credentialsId) {
+            return Jenkins.get().getDescriptorByType(ZOSJobSubmitter.ZOSJobSubmitterDescriptor.class)
+                    .doFillCredentialsIdItems(item, credentialsId);
+        }
+
+        /**
+         * @param value MaxCC provided by user
+         * @return Whether MaxCC is OK to use
+         */
+        public FormValidation doCheckMaxCC(@QueryParameter String value) {
+            if (!value.matches("(\\d{1,4})|(\\s*)"))
+                return FormValidation.error("Value must be 4 decimal digits or empty");
+            return FormValidation.ok();
+        }
+    }
+}
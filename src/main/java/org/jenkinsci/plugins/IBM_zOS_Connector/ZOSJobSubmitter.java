@@ -16,15 +16,18 @@ import hudson.util.ListBoxModel;
 import jenkins.tasks.SimpleBuildStep;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 import javax.annotation.Nonnull;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * <h2>ZOSJobSubmitter</h2>
@@ -38,6 +41,10 @@ public class ZOSJobSubmitter extends Builder implements SimpleBuildStep {
      * Simple logger.
      */
     private static final Logger logger = Logger.getLogger(ZOSJobSubmitter.class.getName());
+    /**
+     * JOB statement of the JCL.
+     */
+    private static final Pattern JobStatement = Pattern.compile("^//([A-Z$#@][A-Z0-9$#@]{0,7})\\s+JOB(?:\\s|$)", Pattern.MULTILINE);
     /**
      * LPAR name or IP address.
      */
@@ -82,6 +89,42 @@ public class ZOSJobSubmitter extends Builder implements SimpleBuildStep {
      * FTP data transfer mode
      */
     private final boolean FTPActiveMode;
+    /**
+     * Whether single FTP control connection is kept for the whole job.
+     */
+    private boolean reuseSession;
+    /**
+     * First JES poll delay in milliseconds.
+     */
+    private int initialPollInterval = PollingStrategy.DEFAULT_INITIAL_INTERVAL;
+    /**
+     * JES poll delay ceiling in seconds.
+     */
+    private int maxPollInterval = PollingStrategy.DEFAULT_MAX_INTERVAL;
+    /**
+     * Whether past durations of the job are used to predict its end.
+     */
+    private boolean predictivePolling;
+    /**
+     * DD, step or procedure step names of spool files to retrieve (comma or space separated), empty for the whole job log.
+     */
+    private String spoolFiles;
+    /**
+     * Whether big job logs are retrieved as separate spool files in parallel.
+     */
+    private boolean parallelRetrieval;
+    /**
+     * Whether JCL and job log are transferred compressed (MODE Z).
+     */
+    private boolean compression;
+    /**
+     * Whether spool files of the running job are tailed into the console.
+     */
+    private boolean liveTail;
+    /**
+     * Whether FTP work runs on the agent holding the workspace instead of the controller.
+     */
+    private boolean runOnAgent;
 
     /**
      * Constructor. Invoked when 'Apply' or 'Save' button is pressed on the project configuration page.
@@ -150,23 +193,15 @@ public class ZOSJobSubmitter extends Builder implements SimpleBuildStep {
         String _server = this.server;
         String _jobFile = this.jobFile;
         String _MaxCC = this.MaxCC;
-        String inputJCL;
+        EnvVars environment;
 
         String logPrefix = run.getParent().getDisplayName() + " " + run.getId() + ": ";
         try {
             logger.info(logPrefix + "will expand variables");
-            EnvVars environment = run.getEnvironment(listener);
+            environment = run.getEnvironment(listener);
             _server = environment.expand(_server);
             _jobFile = environment.expand(_jobFile);
             _MaxCC = environment.expand(_MaxCC);
-            // Read the JCL + expand.
-            try {
-                inputJCL = workspace.child(_jobFile).readToString();
-            } catch (FileNotFoundException e) {
-                throw new AbortException("Job file not found: ./" + _jobFile);
-            }
-            inputJCL = environment.expand(inputJCL);
-
         } catch (IOException | InterruptedException e) {
             e.printStackTrace();
             throw new AbortException(e.getMessage());
@@ -181,81 +216,105 @@ public class ZOSJobSubmitter extends Builder implements SimpleBuildStep {
             throw new AbortException("Cannot resolve credentials: " + credentialsId);
         }
 
-        // Prepare the input and output stream.
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(inputJCL.getBytes(StandardCharsets.UTF_8));
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        // Get connector.
-        ZFTPConnector zFTPConnector = new ZFTPConnector(_server,
-                this.port,
-                creds.getUsername(),
-                creds.getPassword().getPlainText(),
-                this.JESINTERFACELEVEL1,
-                logPrefix,
-                this.FTPActiveMode);
-        // Submit the job.
-        boolean result = zFTPConnector.submit(inputStream, this.wait, this.waitTime, outputStream, this.deleteJobFromSpool, listener);
-
-        // Get CC.
-        String printableCC = zFTPConnector.getJobCC();
-        if (printableCC != null)
-            printableCC = printableCC.replaceAll("\\s+", "");
-        else
-            printableCC = "";
-
-        // Print the info about the job
-        logger.info("Job [" + zFTPConnector.getJobID() + "] processing finished.");
+        // Submit the job, here or on the agent holding the workspace.
+        ZOSJobSubmission submission = new ZOSJobSubmission(this, _server, _jobFile,
+                creds.getUsername(), creds.getPassword(), environment, listener, logPrefix,
+                run.getParent().getDisplayName() + " - " + run.getId());
+        ZOSJobSubmission.Outcome outcome;
+        try {
+            outcome = this.runOnAgent ? workspace.act(submission) : submission.submit(workspace);
+        } catch (AbortException e) {
+            throw e;
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            throw new AbortException(e.getMessage());
+        }
+
+        // Export the handle of a job left running to the following build steps.
+        if (!this.wait && outcome.jobID != null && !outcome.jobID.isEmpty()) {
+            ZOSJobHandles.add(run, _server, outcome.jobID, outcome.jobName);
+        }
+
+        String printableCC = outcome.printableCC;
+        if (!this.wait) {
+            printableCC = "0000"; //set RC = 0
+        }
+
+        if (!(outcome.result && (_MaxCC.compareTo(printableCC) >= 0))) {
+            throw new AbortException("z/OS job failed with CC " + printableCC);
+        }
+    }
+
+    /**
+     * @param spoolFiles Comma or space separated names.
+     * @return Names, empty if none.
+     */
+    static List<String> spoolFileNames(String spoolFiles) {
+        if (spoolFiles == null || spoolFiles.trim().isEmpty())
+            return Collections.emptyList();
+        return Arrays.asList(spoolFiles.trim().split("[,\\s]+"));
+    }
+
+    /**
+     * @param jcl JCL text of the job.
+     * @return Name on the JOB statement, empty string if none found.
+     */
+    static String jobName(String jcl) {
+        Matcher matcher = JobStatement.matcher(jcl);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    /**
+     * @param jobCC Job CC as reported by the connector.
+     * @return CC without whitespace, empty string if unknown.
+     */
+    static String printableCC(String jobCC) {
+        return (jobCC != null) ? jobCC.replaceAll("\\s+", "") : "";
+    }
+
+    /**
+     * @param jobID       JES job ID.
+     * @param printableCC Job CC.
+     * @return Line reporting how the waited-for job ended.
+     */
+    static String report(String jobID, String printableCC) {
         StringBuilder reportBuilder = new StringBuilder();
         reportBuilder.append("Job [")
-                .append(zFTPConnector.getJobID())
+                .append(jobID)
                 .append("] processing ");
-        if (this.wait) {
-            if (!printableCC.matches("\\d+")) {
-                if (printableCC.startsWith("ABEND")) {
-                    reportBuilder.append("ABnormally ENDed. ABEND code = [");
-                } else {
-                    reportBuilder.append("failed. Reason: [");
-                }
+        if (!printableCC.matches("\\d+")) {
+            if (printableCC.startsWith("ABEND")) {
+                reportBuilder.append("ABnormally ENDed. ABEND code = [");
             } else {
-                reportBuilder.append("finished. Captured RC = [");
-            }
-            reportBuilder
-                    .append(printableCC)
-                    .append("]");
-        } else {
-            reportBuilder.append("finished. Skip waiting.");
-        }
-        listener.getLogger().println(reportBuilder);
-
-        // If wait was requested try to save the job log.
-        if (this.wait) {
-            if (this.jobLogToConsole) {
-                listener.getLogger().println(outputStream.toString(StandardCharsets.US_ASCII.name()));
-            }
-            // Save the log.
-            try {
-                FilePath savedOutput = new FilePath(workspace,
-                        String.format("%s [%s] (%s - %s) %s - %s.log",
-                                zFTPConnector.getJobName(),
-                                printableCC,
-                                _server,
-                                zFTPConnector.getJobID(),
-                                run.getParent().getDisplayName(),
-                                run.getId()
-                        ));
-                outputStream.writeTo(savedOutput.write());
-                outputStream.close();
-            } catch (IOException | InterruptedException e) {
-                e.printStackTrace();
-                throw new AbortException(e.getMessage());
+                reportBuilder.append("failed. Reason: [");
             }
         } else {
-            printableCC = "0000"; //set RC = 0
+            reportBuilder.append("finished. Captured RC = [");
         }
+        return reportBuilder
+                .append(printableCC)
+                .append("]")
+                .toString();
+    }
 
-        if (!(result && (_MaxCC.compareTo(printableCC) >= 0))) {
-            throw new AbortException("z/OS job failed with CC " + printableCC);
-        }
+    /**
+     * @param workspace   Current workspace.
+     * @param jobName     JES job name.
+     * @param jobID       JES job ID.
+     * @param printableCC Job CC.
+     * @param server      LPAR name or IP address.
+     * @param runName     Project name and build number.
+     * @return Workspace file to save the job log to.
+     */
+    static FilePath jobLogFile(FilePath workspace, String jobName, String jobID, String printableCC, String server, String runName) {
+        return new FilePath(workspace,
+                String.format("%s [%s] (%s - %s) %s.log",
+                        jobName,
+                        printableCC,
+                        server,
+                        jobID,
+                        runName
+                ));
     }
 
     /**
@@ -352,6 +411,148 @@ public class ZOSJobSubmitter extends Builder implements SimpleBuildStep {
         return this.FTPActiveMode;
     }
 
+    /**
+     * Get reuseSession.
+     *
+     * @return <b><code>reuseSession</code></b>
+     */
+    public boolean getReuseSession() {
+        return this.reuseSession;
+    }
+
+    /**
+     * @param reuseSession Whether single FTP control connection is kept for the whole job.
+     */
+    @DataBoundSetter
+    public void setReuseSession(boolean reuseSession) {
+        this.reuseSession = reuseSession;
+    }
+
+    /**
+     * Get initialPollInterval.
+     *
+     * @return <b><code>initialPollInterval</code></b>
+     */
+    public int getInitialPollInterval() {
+        return this.initialPollInterval;
+    }
+
+    /**
+     * @param initialPollInterval First JES poll delay in milliseconds.
+     */
+    @DataBoundSetter
+    public void setInitialPollInterval(int initialPollInterval) {
+        this.initialPollInterval = initialPollInterval;
+    }
+
+    /**
+     * Get maxPollInterval.
+     *
+     * @return <b><code>maxPollInterval</code></b>
+     */
+    public int getMaxPollInterval() {
+        return this.maxPollInterval;
+    }
+
+    /**
+     * @param maxPollInterval JES poll delay ceiling in seconds.
+     */
+    @DataBoundSetter
+    public void setMaxPollInterval(int maxPollInterval) {
+        this.maxPollInterval = maxPollInterval;
+    }
+
+    /**
+     * @return Whether past durations of the job are used to predict its end.
+     */
+    public boolean getPredictivePolling() {
+        return this.predictivePolling;
+    }
+
+    /**
+     * @param predictivePolling Whether past durations of the job are used to predict its end.
+     */
+    @DataBoundSetter
+    public void setPredictivePolling(boolean predictivePolling) {
+        this.predictivePolling = predictivePolling;
+    }
+
+    /**
+     * @return DD, step or procedure step names of spool files to retrieve.
+     */
+    public String getSpoolFiles() {
+        return this.spoolFiles;
+    }
+
+    /**
+     * @param spoolFiles DD, step or procedure step names of spool files to retrieve (comma or space separated),
+     *                   empty for the whole job log.
+     */
+    @DataBoundSetter
+    public void setSpoolFiles(String spoolFiles) {
+        this.spoolFiles = Util.fixEmptyAndTrim(spoolFiles);
+    }
+
+    /**
+     * @return Whether big job logs are retrieved as separate spool files in parallel.
+     */
+    public boolean getParallelRetrieval() {
+        return this.parallelRetrieval;
+    }
+
+    /**
+     * @param parallelRetrieval Whether big job logs are retrieved as separate spool files in parallel.
+     */
+    @DataBoundSetter
+    public void setParallelRetrieval(boolean parallelRetrieval) {
+        this.parallelRetrieval = parallelRetrieval;
+    }
+
+    /**
+     * @return Whether JCL and job log are transferred compressed (MODE Z).
+     */
+    public boolean getCompression() {
+        return this.compression;
+    }
+
+    /**
+     * @param compression Whether JCL and job log are transferred compressed (MODE Z).
+     */
+    @DataBoundSetter
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * @return Whether spool files of the running job are tailed into the console.
+     */
+    public boolean getLiveTail() {
+        return this.liveTail;
+    }
+
+    /**
+     * @param liveTail Whether spool files of the running job are tailed into the console.
+     */
+    @DataBoundSetter
+    public void setLiveTail(boolean liveTail) {
+        this.liveTail = liveTail;
+    }
+
+    /**
+     * @return Whether FTP work runs on the agent holding the workspace instead of the controller.
+     */
+    public boolean getRunOnAgent() {
+        return this.runOnAgent;
+    }
+
+    /**
+     * @param runOnAgent Whether FTP work runs on the agent holding the workspace instead of the controller.
+     */
+    @DataBoundSetter
+    public void setRunOnAgent(boolean runOnAgent) {
+        this.runOnAgent = runOnAgent;
+    }
+
     /**
      * Get descriptor for this class.
      *
@@ -0,0 +1,217 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h2>ZOSWaitEngine</h2>
+ * Threads of the plugin: a small scheduler driving {@link JESMonitor} ticks and timeouts,
+ * a bounded worker pool for short FTP work that never waits for a session (JES monitor and live tail ticks),
+ * a bounded pool for job work that may wait in line for a session to the server (submission, job log retrieval)
+ * and a bounded pool for work started by job workers and waited for by them (parallel spool file transfers, session warm-up).
+ * Number of threads doesn't depend on the number of jobs in flight: waiting for JES holds no thread,
+ * neither does waiting between job log retrieval attempts.
+ *
+ * @see ZFTPConnector#submitAsync(java.io.InputStream, boolean, int, java.io.OutputStream, boolean)
+ */
+final class ZOSWaitEngine {
+    /**
+     * Number of scheduler threads.
+     */
+    private static final int schedulerThreads = Integer.getInteger(ZOSWaitEngine.class.getName() + ".schedulerThreads", 2);
+    /**
+     * Number of worker threads.
+     */
+    private static final int workerThreads = Integer.getInteger(ZOSWaitEngine.class.getName() + ".workerThreads", 8);
+    /**
+     * Number of job worker threads.
+     */
+    private static final int jobThreads = Integer.getInteger(ZOSWaitEngine.class.getName() + ".jobThreads", 8);
+    /**
+     * Number of parallel spool file transfers.
+     */
+    private static final int transferThreads = Integer.getInteger(ZOSWaitEngine.class.getName() + ".transferThreads", 4);
+    /**
+     * The engine.
+     */
+    private static final ZOSWaitEngine INSTANCE = new ZOSWaitEngine();
+
+    /**
+     * JES monitor ticks and timeouts.
+     */
+    private final ScheduledThreadPoolExecutor scheduler;
+    /**
+     * FTP work that never waits for a session.
+     */
+    private final ThreadPoolExecutor workers;
+    /**
+     * Job work that may wait for a session. Separate from workers, so that JES monitor goes on while it waits.
+     */
+    private final ThreadPoolExecutor jobs;
+    /**
+     * Spool file transfers and session warm-ups. Separate from workers, which wait for them.
+     */
+    private final ThreadPoolExecutor transfers;
+    /**
+     * Jobs submitted via the engine and not finished yet.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Constructor.
+     */
+    private ZOSWaitEngine() {
+        this.scheduler = new ScheduledThreadPoolExecutor(schedulerThreads,
+                new NamingThreadFactory(new DaemonThreadFactory(), "z/OS wait engine scheduler"));
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "z/OS wait engine worker"));
+        this.workers.allowCoreThreadTimeOut(true);
+        this.jobs = new ThreadPoolExecutor(jobThreads, jobThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "z/OS wait engine job worker"));
+        this.jobs.allowCoreThreadTimeOut(true);
+        this.transfers = new ThreadPoolExecutor(transferThreads, transferThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "z/OS spool transfer"));
+        this.transfers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return JVM-wide engine.
+     */
+    static ZOSWaitEngine get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param task  Short non-blocking (or quick) task.
+     * @param delay Delay in milliseconds.
+     * @return Scheduled task.
+     */
+    ScheduledFuture<?> schedule(Runnable task, long delay) {
+        return this.scheduler.schedule(task, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Executor for FTP work that never waits for a session (uses {@link ZFTPSessionPool#tryBorrow}).
+     */
+    Executor workers() {
+        return this.workers;
+    }
+
+    /**
+     * @return Executor for job work that may wait for a session (submission, job log retrieval).
+     */
+    Executor jobs() {
+        return this.jobs;
+    }
+
+    /**
+     * @return Executor for spool file transfers and session warm-ups.
+     */
+    Executor transfers() {
+        return this.transfers;
+    }
+
+    /**
+     * Fail the future with {@link TimeoutException} unless it completes in time.
+     *
+     * @param future  Future to limit.
+     * @param timeout Timeout in milliseconds.
+     * @param <T>     Result type.
+     * @return The same future.
+     */
+    <T> CompletableFuture<T> timeout(CompletableFuture<T> future, long timeout) {
+        ScheduledFuture<?> timer = this.schedule(() -> future.completeExceptionally(new TimeoutException()), timeout);
+        future.whenComplete((r, e) -> timer.cancel(false));
+        return future;
+    }
+
+    /**
+     * Count the job as in flight until the future completes.
+     *
+     * @param future Job future.
+     * @param <T>    Result type.
+     * @return The same future.
+     */
+    <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        this.inFlight.incrementAndGet();
+        future.whenComplete((r, e) -> this.inFlight.decrementAndGet());
+        return future;
+    }
+
+    /**
+     * @return Jobs submitted via the engine and not finished yet.
+     */
+    int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * @return Scheduled ticks and timeouts.
+     */
+    int getScheduledTasks() {
+        return this.scheduler.getQueue().size();
+    }
+
+    /**
+     * @return Blocking tasks waiting for a worker.
+     */
+    int getQueueDepth() {
+        return this.workers.getQueue().size();
+    }
+
+    /**
+     * @return Workers currently busy.
+     */
+    int getActiveWorkers() {
+        return this.workers.getActiveCount();
+    }
+
+    /**
+     * @return Worker pool size limit.
+     */
+    int getMaxWorkers() {
+        return this.workers.getMaximumPoolSize();
+    }
+
+    /**
+     * @return Job work waiting for a job worker.
+     */
+    int getQueuedJobs() {
+        return this.jobs.getQueue().size();
+    }
+
+    /**
+     * @return Job workers currently busy.
+     */
+    int getActiveJobs() {
+        return this.jobs.getActiveCount();
+    }
+
+    /**
+     * @return Job worker pool size limit.
+     */
+    int getMaxJobs() {
+        return this.jobs.getMaximumPoolSize();
+    }
+
+    /**
+     * @return Spool file transfers in progress.
+     */
+    int getActiveTransfers() {
+        return this.transfers.getActiveCount();
+    }
+
+    /**
+     * @return Spool file transfers waiting for a thread.
+     */
+    int getQueuedTransfers() {
+        return this.transfers.getQueue().size();
+    }
+}
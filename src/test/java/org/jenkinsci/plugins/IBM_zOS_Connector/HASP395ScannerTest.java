@@ -0,0 +1,79 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class HASP395ScannerTest {
+    private static HASP395Scanner scan(String jobName, String log, ByteArrayOutputStream out) throws IOException {
+        HASP395Scanner scanner = new HASP395Scanner(out, jobName);
+        scanner.write(log.getBytes(StandardCharsets.US_ASCII));
+        scanner.finish();
+        return scanner;
+    }
+
+    @Test
+    public void findsRC() throws IOException {
+        String log = "10.00.00 JOB00123 ---- MONDAY\r\n"
+                + "10.00.01 JOB00123  $HASP373 USER1A   STARTED\r\n"
+                + "10.00.02 JOB00123  $HASP395 USER1A   ENDED - RC=0004\r\n"
+                + "------ JES2 JOB STATISTICS ------\r\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HASP395Scanner scanner = scan("USER1A", log, out);
+        assertEquals("RC=0004", scanner.getRC());
+        assertEquals("10.00.02 JOB00123  $HASP395 USER1A   ENDED - RC=0004", scanner.getHASP395Line());
+        assertFalse(scanner.sawJCLError());
+        // Log passes through unchanged.
+        assertEquals(log, new String(out.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void otherJobIgnored() throws IOException {
+        HASP395Scanner scanner = scan("USER1A", "$HASP395 USER1B   ENDED - RC=0000\n", new ByteArrayOutputStream());
+        assertNull(scanner.getHASP395Line());
+        assertNull(scanner.getRC());
+    }
+
+    @Test
+    public void anyJob() throws IOException {
+        HASP395Scanner scanner = scan(null, "$HASP395 USER1B   ENDED - RC=0000\n", new ByteArrayOutputStream());
+        assertEquals("RC=0000", scanner.getRC());
+    }
+
+    @Test
+    public void jclError() throws IOException {
+        String log = "10.00.01 JOB00123  $HASP165 USER1A ENDED AT N1 - JCL ERROR CN(INTERNAL)\n"
+                + "10.00.01 JOB00123  $HASP395 USER1A   ENDED\n";
+        HASP395Scanner scanner = scan("USER1A", log, new ByteArrayOutputStream());
+        assertTrue(scanner.sawJCLError());
+        assertNotNull(scanner.getHASP395Line());
+        assertNull(scanner.getRC());
+    }
+
+    @Test
+    public void firstMessageWins() throws IOException {
+        String log = "$HASP395 USER1A   ENDED - RC=0008\n$HASP395 USER1A   ENDED - RC=0000\n";
+        assertEquals("RC=0008", scan("USER1A", log, new ByteArrayOutputStream()).getRC());
+    }
+
+    @Test
+    public void unterminatedLastLine() throws IOException {
+        HASP395Scanner scanner = new HASP395Scanner(null, "USER1A");
+        scanner.write("$HASP395 USER1A   ENDED - RC=0012".getBytes(StandardCharsets.US_ASCII));
+        assertNull(scanner.getRC());
+        scanner.finish();
+        assertEquals("RC=0012", scanner.getRC());
+    }
+
+    @Test
+    public void byteByByte() throws IOException {
+        HASP395Scanner scanner = new HASP395Scanner(null, "USER1A");
+        for (byte b : "x\n$HASP395 USER1A ENDED - RC=0001\n".getBytes(StandardCharsets.US_ASCII))
+            scanner.write(b);
+        assertEquals("RC=0001", scanner.getRC());
+    }
+}
@@ -0,0 +1,153 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JESJobStatusTest {
+    @Test
+    public void level2Output() {
+        JESJobStatus status = JESJobStatus.parse("BUILD1   JOB00123 USER1    OUTPUT A        RC=0004 5 spool files");
+        assertNotNull(status);
+        assertEquals("BUILD1", status.jobName);
+        assertEquals("JOB00123", status.jobID);
+        assertEquals("USER1", status.owner);
+        assertEquals(JESJobStatus.State.OUTPUT, status.state);
+        assertEquals("0004", status.getJobCC());
+    }
+
+    @Test
+    public void level2Active() {
+        JESJobStatus status = JESJobStatus.parse("BUILD1   J0012345 USER1    ACTIVE A");
+        assertNotNull(status);
+        assertEquals("J0012345", status.jobID);
+        assertEquals(JESJobStatus.State.ACTIVE, status.state);
+        assertNull(status.getJobCC());
+    }
+
+    @Test
+    public void level1Output() {
+        JESJobStatus status = JESJobStatus.parse("USER1A   JOB00128  OUTPUT   3 Spool Files");
+        assertNotNull(status);
+        assertEquals("USER1A", status.jobName);
+        assertEquals("JOB00128", status.jobID);
+        assertNull(status.owner);
+        assertEquals(JESJobStatus.State.OUTPUT, status.state);
+        assertNull(status.getJobCC());
+    }
+
+    @Test
+    public void level1Input() {
+        JESJobStatus status = JESJobStatus.parse("USER1A   JOB00129  INPUT");
+        assertNotNull(status);
+        assertEquals(JESJobStatus.State.INPUT, status.state);
+    }
+
+    @Test
+    public void unknownState() {
+        JESJobStatus status = JESJobStatus.parse("BUILD1   JOB00130 USER1");
+        assertNotNull(status);
+        assertEquals(JESJobStatus.State.UNKNOWN, status.state);
+        assertNull(status.owner);
+    }
+
+    @Test
+    public void rcUnknown() {
+        JESJobStatus status = JESJobStatus.parse("BUILD1   JOB00126 USER1    OUTPUT A        RC unknown 3 spool files");
+        assertNotNull(status);
+        assertEquals("UNKNOWN", status.getJobCC());
+    }
+
+    @Test
+    public void abend() {
+        JESJobStatus status = JESJobStatus.parse("BUILD1   JOB00124 USER1    OUTPUT A        ABEND=S0C4 3 spool files");
+        assertNotNull(status);
+        assertEquals("ABEND_S0C4", status.getJobCC());
+    }
+
+    @Test
+    public void jclError() {
+        JESJobStatus status = JESJobStatus.parse("BUILD1   JOB00125 USER1    OUTPUT A        (JCL error) 3 spool files");
+        assertNotNull(status);
+        assertEquals("JCL_ERROR", status.getJobCC());
+    }
+
+    @Test
+    public void headersAreNotJobs() {
+        assertNull(JESJobStatus.parse("JOBNAME  JOBID    OWNER    STATUS CLASS"));
+        assertNull(JESJobStatus.parse("         ID  STEPNAME PROCSTEP C DDNAME   BYTE-COUNT"));
+        assertNull(JESJobStatus.parse("--------"));
+        assertNull(JESJobStatus.parse("3 spool files"));
+        assertNull(JESJobStatus.parse(""));
+    }
+
+    @Test
+    public void spoolFileLinesAreNotJobs() {
+        assertNull(JESJobStatus.parse("         001 JES2              A JESMSGLG       1200"));
+        assertNull(JESJobStatus.parse("         003 STEP1    COMPILE  A SYSPRINT      12345"));
+    }
+
+    @Test
+    public void jobIDs() {
+        assertTrue(JESJobStatus.isJobID("JOB00123"));
+        assertTrue(JESJobStatus.isJobID("J0012345"));
+        assertTrue(JESJobStatus.isJobID("STC00123"));
+        assertFalse(JESJobStatus.isJobID("JOBID"));
+        assertFalse(JESJobStatus.isJobID("00123"));
+        assertFalse(JESJobStatus.isJobID("JOBS00123"));
+        assertFalse(JESJobStatus.isJobID("JOB0012A"));
+        assertFalse(JESJobStatus.isJobID(null));
+    }
+
+    @Test
+    public void jobCCFromText() {
+        assertEquals("0008", JESJobStatus.parseJobCC("$HASP395 BUILD1   ENDED - RC=0008"));
+        assertEquals("ABEND_U0100", JESJobStatus.parseJobCC("$HASP395 BUILD1   ENDED - ABEND=U0100"));
+        assertNull(JESJobStatus.parseJobCC("$HASP395 BUILD1   ENDED"));
+    }
+
+    @Test
+    public void parserEntries() {
+        JESEntryParser parser = new JESEntryParser();
+        FTPFile job = parser.parseFTPEntry("BUILD1   JOB00123 USER1    OUTPUT A        RC=0000 3 spool files");
+        assertTrue(job instanceof JESEntryParser.Entry);
+        assertEquals("JOB00123", job.getName());
+        assertEquals("0000", ((JESEntryParser.Entry) job).status.getJobCC());
+
+        FTPFile spoolFile = parser.parseFTPEntry("         002 JES2              A JESJCL          500");
+        assertTrue(spoolFile instanceof JESEntryParser.SpoolEntry);
+        assertEquals("2", spoolFile.getName());
+        assertEquals(500, spoolFile.getSize());
+
+        assertNull(parser.parseFTPEntry("JOBNAME  JOBID    OWNER    STATUS CLASS"));
+        assertNull(parser.parseFTPEntry("3 spool files"));
+    }
+
+    @Test
+    public void bigListing() {
+        String[] lines = new String[10000];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = String.format("BUILD%-3d JOB%05d USER1    %s A        RC=%04d 3 spool files",
+                    i % 1000, i, (i % 3 == 0) ? "ACTIVE" : "OUTPUT", i % 16);
+        }
+        // One parser serves the whole listing of a JES monitor tick.
+        JESEntryParser parser = new JESEntryParser();
+        int active = 0;
+        int output = 0;
+        for (String line : lines) {
+            FTPFile entry = parser.parseFTPEntry(line);
+            assertTrue(line, entry instanceof JESEntryParser.Entry);
+            JESJobStatus status = ((JESEntryParser.Entry) entry).status;
+            if (status.state == JESJobStatus.State.ACTIVE)
+                active++;
+            else if (status.state == JESJobStatus.State.OUTPUT)
+                output++;
+        }
+        assertEquals(3334, active);
+        assertEquals(6666, output);
+        JESJobStatus status = ((JESEntryParser.Entry) parser.parseFTPEntry(lines[9998])).status;
+        assertEquals("JOB09998", status.jobID);
+        assertEquals("0014", status.getJobCC());
+    }
+}
@@ -0,0 +1,128 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class JESMonitorTest {
+    private static final PollingStrategy FAST = new PollingStrategy(1, 1);
+
+    @Test
+    public void oneListingForAllJobsOfGroup() throws Exception {
+        FakeLister lister = new FakeLister();
+        lister.respond("lpar1", "JOB00001 OUTPUT RC=0000", "JOB00002 OUTPUT RC=0004", "JOB00003 OUTPUT ABEND=S0C4");
+        lister.respond("lpar2", "JOB00001 OUTPUT RC=0008");
+        JESMonitor monitor = new JESMonitor(lister);
+
+        List<JESMonitor.Watch> watches = new ArrayList<>();
+        JESMonitor.Watch other;
+        // Ticks wait for the monitor lock, so all jobs are there when the first one lists.
+        synchronized (monitor) {
+            for (int i = 1; i <= 3; i++) {
+                watches.add(monitor.watch("lpar1", 21, "USER1", "secret", true, false, "JOB0000" + i, FAST, false));
+            }
+            other = monitor.watch("lpar2", 21, "USER1", "secret", true, false, "JOB00001", FAST, false);
+            assertEquals(4, monitor.getWatchCount());
+            assertEquals(2, monitor.getGroupCount());
+        }
+
+        assertEquals("0000", status(watches.get(0)).getJobCC());
+        assertEquals("0004", status(watches.get(1)).getJobCC());
+        assertEquals("ABEND_S0C4", status(watches.get(2)).getJobCC());
+        assertEquals("0008", status(other).getJobCC());
+        assertEquals(Arrays.asList("lpar1 *", "lpar2 *"), lister.sortedCalls());
+    }
+
+    @Test
+    public void singleJobListedByID() throws Exception {
+        FakeLister lister = new FakeLister();
+        lister.respond("lpar1", "JOB00001 OUTPUT RC=0000");
+        JESMonitor monitor = new JESMonitor(lister);
+
+        JESMonitor.Watch watch = monitor.watch("lpar1", 21, "USER1", "secret", false, false, "JOB00001", FAST, false);
+        assertEquals("0000", status(watch).getJobCC());
+        assertEquals(Collections.singletonList("lpar1 JOB00001"), lister.sortedCalls());
+    }
+
+    @Test
+    public void submittedJobMayBeListedLater() throws Exception {
+        FakeLister lister = new FakeLister();
+        lister.respond("lpar1");
+        lister.respond("lpar1", "JOB00001 ACTIVE");
+        lister.respond("lpar1", "JOB00001 OUTPUT RC=0000");
+        JESMonitor monitor = new JESMonitor(lister);
+
+        JESMonitor.Watch watch = monitor.watch("lpar1", 21, "USER1", "secret", true, false, "JOB00001", FAST, false);
+        assertEquals("0000", status(watch).getJobCC());
+        assertEquals(3, lister.sortedCalls().size());
+    }
+
+    @Test
+    public void listedJobGone() throws Exception {
+        FakeLister lister = new FakeLister();
+        lister.respond("lpar1");
+        JESMonitor monitor = new JESMonitor(lister);
+
+        // Watched again after restart: first listing without the job means it was purged meanwhile.
+        JESMonitor.Watch watch = monitor.watch("lpar1", 21, "USER1", "secret", true, false, "JOB00001", FAST, true);
+        assertNull(status(watch));
+        assertEquals(1, lister.sortedCalls().size());
+    }
+
+    @Test
+    public void observedJobVanished() throws Exception {
+        FakeLister lister = new FakeLister();
+        lister.respond("lpar1", "JOB00001 ACTIVE");
+        lister.respond("lpar1");
+        JESMonitor monitor = new JESMonitor(lister);
+
+        JESMonitor.Watch watch = monitor.watch("lpar1", 21, "USER1", "secret", true, false, "JOB00001", FAST, false);
+        assertNull(status(watch));
+        assertEquals(2, lister.sortedCalls().size());
+    }
+
+    private static JESJobStatus status(JESMonitor.Watch watch) throws Exception {
+        return watch.future.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Answers listings of each server with its responses in turn, the last one repeated.
+     */
+    private static final class FakeLister implements JESMonitor.Lister {
+        private final Map<String, Deque<Map<String, JESJobStatus>>> responses = new HashMap<>();
+        private final List<String> calls = new ArrayList<>();
+
+        /**
+         * @param server LPAR.
+         * @param jobs   Job ID, state and rest of the listing line of each job.
+         */
+        synchronized void respond(String server, String... jobs) {
+            Map<String, JESJobStatus> entries = new HashMap<>();
+            for (String job : jobs) {
+                String[] fields = job.split(" ", 3);
+                JESJobStatus status = JESJobStatus.parse(String.format("BUILD1   %s USER1    %s A        %s",
+                        fields[0], fields[1], fields.length > 2 ? fields[2] : ""));
+                assertNotNull(job, status);
+                entries.put(status.jobID, status);
+            }
+            this.responses.computeIfAbsent(server, s -> new ArrayDeque<>()).add(entries);
+        }
+
+        synchronized List<String> sortedCalls() {
+            List<String> calls = new ArrayList<>(this.calls);
+            Collections.sort(calls);
+            return calls;
+        }
+
+        @Override
+        public synchronized Map<String, JESJobStatus> list(ZFTPSessionPool.Key key, String password, boolean FTPActiveMode,
+                                                           String pathname) {
+            this.calls.add(key.server + " " + pathname);
+            Deque<Map<String, JESJobStatus>> queue = this.responses.get(key.server);
+            return queue.size() > 1 ? queue.poll() : queue.peek();
+        }
+    }
+}
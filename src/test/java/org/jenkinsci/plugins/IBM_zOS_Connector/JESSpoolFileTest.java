@@ -0,0 +1,55 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class JESSpoolFileTest {
+    @Test
+    public void withoutProcStep() {
+        JESSpoolFile spoolFile = JESSpoolFile.parse("         001 JES2              A JESMSGLG       1200");
+        assertNotNull(spoolFile);
+        assertEquals(1, spoolFile.id);
+        assertEquals("JES2", spoolFile.stepName);
+        assertNull(spoolFile.procStep);
+        assertEquals("JESMSGLG", spoolFile.ddName);
+        assertEquals(1200, spoolFile.byteCount);
+        assertEquals("JES2.JESMSGLG", spoolFile.toString());
+    }
+
+    @Test
+    public void withProcStep() {
+        JESSpoolFile spoolFile = JESSpoolFile.parse("         003 STEP1    COMPILE  A SYSPRINT      12345");
+        assertNotNull(spoolFile);
+        assertEquals(3, spoolFile.id);
+        assertEquals("STEP1", spoolFile.stepName);
+        assertEquals("COMPILE", spoolFile.procStep);
+        assertEquals("SYSPRINT", spoolFile.ddName);
+        assertEquals(12345, spoolFile.byteCount);
+        assertEquals("STEP1.COMPILE.SYSPRINT", spoolFile.toString());
+    }
+
+    @Test
+    public void otherLines() {
+        assertNull(JESSpoolFile.parse("         ID  STEPNAME PROCSTEP C DDNAME   BYTE-COUNT"));
+        assertNull(JESSpoolFile.parse("BUILD1   JOB00123 USER1    OUTPUT A        RC=0000"));
+        assertNull(JESSpoolFile.parse("3 spool files"));
+        assertNull(JESSpoolFile.parse("--------"));
+        assertNull(JESSpoolFile.parse(""));
+        assertNull(JESSpoolFile.parse("001 STEP1 PROC A SYSPRINT 12 EXTRA"));
+        assertNull(JESSpoolFile.parse("001 STEP1 AB SYSPRINT 12"));
+    }
+
+    @Test
+    public void matches() {
+        JESSpoolFile spoolFile = JESSpoolFile.parse("         003 STEP1    COMPILE  A SYSPRINT      12345");
+        assertNotNull(spoolFile);
+        assertTrue(spoolFile.matches(Collections.singleton("SYSPRINT")));
+        assertTrue(spoolFile.matches(Collections.singleton("STEP1")));
+        assertTrue(spoolFile.matches(Collections.singleton("COMPILE")));
+        assertFalse(spoolFile.matches(Arrays.asList("SYSOUT", "STEP2")));
+    }
+}
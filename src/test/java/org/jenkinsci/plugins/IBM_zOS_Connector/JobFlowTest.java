@@ -0,0 +1,135 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class JobFlowTest {
+    private static String ids(List<JobFlow.Node> nodes) {
+        return nodes.stream().map(node -> node.id).collect(Collectors.joining(" "));
+    }
+
+    private static JobFlow.Node node(JobFlow flow, String id) {
+        return flow.getNodes().stream().filter(node -> node.id.equals(id)).findFirst().orElse(null);
+    }
+
+    @Test
+    public void parsesNodes() {
+        JobFlow flow = JobFlow.parse("# nightly build\n"
+                + "\n"
+                + "COMPILE: jcl/compile.jcl on LPAR2\r\n"
+                + "LINK: jcl/link.jcl after COMPILE   # comment\n");
+        assertEquals("COMPILE LINK", ids(flow.getNodes()));
+        JobFlow.Node compile = node(flow, "COMPILE");
+        assertEquals("jcl/compile.jcl", compile.jobFile);
+        assertEquals("LPAR2", compile.server);
+        assertTrue(compile.predecessors.isEmpty());
+        JobFlow.Node link = node(flow, "LINK");
+        assertNull(link.server);
+        assertSame(compile, link.predecessors.get(0));
+        // No condition: flow MaxCC applies.
+        assertTrue(link.after.containsKey("COMPILE"));
+        assertNull(link.after.get("COMPILE"));
+    }
+
+    @Test
+    public void parsesRCConditions() {
+        JobFlow flow = JobFlow.parse("A: a.jcl\n"
+                + "B: b.jcl\n"
+                + "C: c.jcl\n"
+                + "D: d.jcl after A<=4, B <= 0008 C\n");
+        JobFlow.Node d = node(flow, "D");
+        assertEquals("0004", d.after.get("A"));
+        assertEquals("0008", d.after.get("B"));
+        assertNull(d.after.get("C"));
+        assertEquals("A B C", ids(d.predecessors));
+    }
+
+    @Test
+    public void sortsTopologically() {
+        JobFlow flow = JobFlow.parse("REPORT: r.jcl after LOAD, CHECK\n"
+                + "LOAD: l.jcl after EXTRACT\n"
+                + "EXTRACT: e.jcl\n"
+                + "CHECK: c.jcl\n");
+        // Every node after its predecessors, otherwise in definition order.
+        assertEquals("EXTRACT LOAD CHECK REPORT", ids(flow.getNodes()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCycle() {
+        JobFlow.parse("A: a.jcl after C\nB: b.jcl after A\nC: c.jcl after B\nD: d.jcl\n");
+    }
+
+    @Test
+    public void namesCycle() {
+        try {
+            JobFlow.parse("A: a.jcl after B\nB: b.jcl after A\nC: c.jcl\n");
+            fail("cycle accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Dependency cycle among nodes A, B", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSelfDependency() {
+        JobFlow.parse("A: a.jcl after A\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownPredecessor() {
+        JobFlow.parse("A: a.jcl after X\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateNode() {
+        JobFlow.parse("A: a.jcl\nA: b.jcl\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMalformedLine() {
+        JobFlow.parse("A a.jcl\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBadCondition() {
+        JobFlow.parse("A: a.jcl\nB: b.jcl after A<=RC4\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyFlow() {
+        JobFlow.parse("# nothing\n\n");
+    }
+
+    @Test
+    public void criticalPathFollowsLatestPredecessor() {
+        JobFlow flow = JobFlow.parse("A: a.jcl\n"
+                + "B: b.jcl\n"
+                + "C: c.jcl after A, B\n"
+                + "D: d.jcl after C\n"
+                + "E: e.jcl after A\n");
+        Map<String, Long> end = new HashMap<>();
+        end.put("A", 100L);
+        end.put("B", 300L);
+        end.put("C", 400L);
+        end.put("D", 900L);
+        end.put("E", 500L);
+        assertEquals("B C D", ids(flow.criticalPath(node -> end.get(node.id))));
+    }
+
+    @Test
+    public void criticalPathSkipsNodesThatDidNotRun() {
+        JobFlow flow = JobFlow.parse("A: a.jcl\nB: b.jcl after A\nC: c.jcl after A\n");
+        Map<String, Long> end = new HashMap<>();
+        end.put("A", 100L);
+        // B was skipped, C ran last.
+        end.put("B", 0L);
+        end.put("C", 200L);
+        assertEquals("A C", ids(flow.criticalPath(node -> end.get(node.id))));
+        assertTrue(flow.criticalPath(node -> 0L).isEmpty());
+    }
+}
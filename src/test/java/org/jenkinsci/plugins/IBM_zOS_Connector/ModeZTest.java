@@ -0,0 +1,117 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.*;
+
+public class ModeZTest {
+    /**
+     * Client recording the commands that switch transfer type and mode, without a server.
+     */
+    private static final class Client extends FTPClient {
+        final List<String> commands = new ArrayList<>();
+        /**
+         * Reply to <code>MODE Z</code>.
+         */
+        int modeZReply = 200;
+        int fileType = FTP.ASCII_FILE_TYPE;
+
+        @Override
+        public boolean setFileType(int fileType) {
+            this.fileType = fileType;
+            this.commands.add((fileType == FTP.BINARY_FILE_TYPE) ? "TYPE I" : "TYPE A");
+            return true;
+        }
+
+        @Override
+        public int sendCommand(String command, String args) {
+            this.commands.add(command + " " + args);
+            return (command.equals("MODE") && args.equals("Z")) ? this.modeZReply : 200;
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer))
+            out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void switchesToCompressedAndBack() throws IOException {
+        ModeZ modeZ = new ModeZ();
+        Client client = new Client();
+        assertTrue(modeZ.begin(client));
+        // Client handles raw deflate data, server still translates EBCDIC to ASCII.
+        assertEquals(Arrays.asList("TYPE I", "TYPE A", "MODE Z"), client.commands);
+        modeZ.end(client);
+        assertEquals(Arrays.asList("TYPE I", "TYPE A", "MODE Z", "MODE S", "TYPE A"), client.commands);
+        assertEquals(FTP.ASCII_FILE_TYPE, client.fileType);
+        assertFalse(modeZ.isRefused());
+    }
+
+    @Test
+    public void fallsBackWhenRefused() throws IOException {
+        ModeZ modeZ = new ModeZ();
+        Client client = new Client();
+        client.modeZReply = 504;
+        assertFalse(modeZ.begin(client));
+        assertTrue(modeZ.isRefused());
+        // Session is left in uncompressed ASCII mode, as pooled sessions are expected to be.
+        assertEquals(FTP.ASCII_FILE_TYPE, client.fileType);
+        assertEquals("TYPE A", client.commands.get(client.commands.size() - 1));
+
+        // Further transfers of the job don't ask again.
+        client.commands.clear();
+        assertFalse(modeZ.begin(client));
+        assertTrue(client.commands.isEmpty());
+    }
+
+    @Test
+    public void deflatesNetworkASCII() throws IOException {
+        ModeZ modeZ = new ModeZ();
+        String jcl = "//BUILD1   JOB (ACCT)\n//STEP1    EXEC PGM=IEFBR14\n";
+        byte[] compressed = readAll(modeZ.deflate(new ByteArrayInputStream(jcl.getBytes(StandardCharsets.US_ASCII))));
+        String sent = new String(readAll(new InflaterInputStream(new ByteArrayInputStream(compressed))), StandardCharsets.US_ASCII);
+        assertEquals(jcl.replace("\n", "\r\n"), sent);
+        assertEquals(sent.length(), modeZ.getUncompressed());
+        assertEquals(compressed.length, modeZ.getCompressed());
+    }
+
+    @Test
+    public void inflatesToLocalLines() throws IOException {
+        ModeZ modeZ = new ModeZ();
+        String sent = "LINE 1\r\nLINE 2\r\n";
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (OutputStream deflater = new DeflaterOutputStream(data)) {
+            deflater.write(sent.getBytes(StandardCharsets.US_ASCII));
+        }
+        byte[] compressed = data.toByteArray();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream inflater = modeZ.inflate(out)) {
+            inflater.write(compressed);
+        }
+        String nl = System.lineSeparator();
+        assertEquals("LINE 1" + nl + "LINE 2" + nl, out.toString("US-ASCII"));
+        assertEquals(compressed.length, modeZ.getCompressed());
+        assertEquals(sent.length(), modeZ.getUncompressed());
+        // Target stream stays open for the rest of the job log.
+        out.write('x');
+    }
+}
@@ -0,0 +1,44 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PollingStrategyTest {
+    @Test
+    public void backsOffUpToCeiling() {
+        PollingStrategy strategy = new PollingStrategy(500, 30);
+        long first = strategy.nextDelay(0);
+        assertTrue(first >= 400 && first <= 600);
+        long third = strategy.nextDelay(2);
+        assertTrue(third >= 1600 && third <= 2400);
+        for (int polls = 0; polls < 100; polls++) {
+            assertTrue(strategy.nextDelay(polls) <= 36000);
+        }
+        assertTrue(strategy.nextDelay(1000) >= 24000);
+    }
+
+    @Test
+    public void defaults() {
+        PollingStrategy strategy = new PollingStrategy(0, -1);
+        assertEquals("500ms..30s", strategy.toString());
+        assertFalse(strategy.isPredictive());
+        assertEquals("2000ms..2s", new PollingStrategy(2000, 1).toString());
+        assertEquals("500ms..30s, predictive", new PollingStrategy(500, 30, true).toString());
+    }
+
+    @Test
+    public void predictive() {
+        PollingStrategy strategy = new PollingStrategy(500, 30, true);
+        // Sleep until the window opens.
+        assertEquals(50000, strategy.nextDelay(0, 60000, 10000));
+        // Poll tightly inside it.
+        long inside = strategy.nextDelay(0, 5000, 10000);
+        assertTrue(inside >= 800 && inside <= 1200);
+        // Back off as usual once the job overran it.
+        long after = strategy.nextDelay(0, -20000, 10000);
+        assertTrue(after >= 400 && after <= 600);
+        // Window is never narrower than the tight interval.
+        assertEquals(9000, strategy.nextDelay(0, 10000, 0));
+    }
+}
@@ -0,0 +1,80 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ResumeStreamTest {
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void firstAttempt() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZFTPConnector.ResumeStream resume = new ZFTPConnector.ResumeStream(out, 0);
+        resume.write(bytes("0123456789"));
+        assertEquals("0123456789", out.toString("US-ASCII"));
+        assertEquals(10, resume.getPosition());
+    }
+
+    @Test
+    public void skipsReceivedData() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZFTPConnector.ResumeStream resume = new ZFTPConnector.ResumeStream(out, 5);
+        resume.write(bytes("012"));
+        resume.write(bytes("3456"));
+        resume.write('7');
+        resume.write(bytes("89"));
+        assertEquals("56789", out.toString("US-ASCII"));
+        assertEquals(10, resume.getPosition());
+    }
+
+    @Test
+    public void brokenBeforeReceivedData() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZFTPConnector.ResumeStream resume = new ZFTPConnector.ResumeStream(out, 10);
+        resume.write(bytes("012"));
+        assertEquals(0, out.size());
+        // Data already written stays counted.
+        assertEquals(10, resume.getPosition());
+    }
+
+    /**
+     * ASCII transfers arrive with CRLF already converted to the local line separator, so the position counts
+     * local bytes, fewer than the server sent. Resuming by re-reading from the start and skipping them
+     * must not duplicate records, whatever the separator.
+     */
+    @Test
+    public void resumesConvertedRecords() throws IOException {
+        String network = "RECORD 1\r\nRECORD 2\r\nRECORD 3\r\nRECORD 4\r\n";
+        byte[] local = bytes(network.replace("\r\n", "\n"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // First attempt breaks in the middle of the third record.
+        ZFTPConnector.ResumeStream first = new ZFTPConnector.ResumeStream(out, 0);
+        first.write(local, 0, 22);
+        long received = first.getPosition();
+        assertEquals(22, received);
+        assertTrue(received < network.indexOf("RECORD 3") + 4);
+
+        // Second attempt gets the whole log again.
+        ZFTPConnector.ResumeStream second = new ZFTPConnector.ResumeStream(out, received);
+        second.write(local, 0, local.length);
+        assertEquals(new String(local, StandardCharsets.US_ASCII), out.toString("US-ASCII"));
+        assertEquals(local.length, second.getPosition());
+    }
+
+    @Test
+    public void closeKeepsOutputOpen() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZFTPConnector.ResumeStream resume = new ZFTPConnector.ResumeStream(out, 0);
+        resume.close();
+        out.write('x');
+        assertEquals("x", out.toString("US-ASCII"));
+    }
+}
@@ -0,0 +1,129 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ServerHealthTest {
+    /**
+     * Failed connects in a row opening the circuit, by default.
+     */
+    private static final int threshold = 3;
+
+    private static ServerHealth open(int port) {
+        ServerHealth health = new ServerHealth("127.0.0.1:" + port, "127.0.0.1", port);
+        for (int i = 0; i < threshold; i++)
+            health.failure(new IOException("Connection refused"));
+        return health;
+    }
+
+    /**
+     * @return Port nothing listens on.
+     */
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    public void opensAfterFailuresInARow() throws IOException {
+        ServerHealth health = new ServerHealth("LPAR1:21", "LPAR1", 21);
+        for (int i = 1; i < threshold; i++) {
+            health.failure(new IOException("Connection refused"));
+            health.check();
+            assertFalse(health.isOpen());
+        }
+        health.failure(new IOException("Connection timed out"));
+        assertTrue(health.isOpen());
+        assertEquals(1, health.getTrips());
+        assertEquals("Connection timed out", health.getLastError());
+        try {
+            health.check();
+            fail("open circuit let a session through");
+        } catch (ServerHealth.CircuitOpenException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("LPAR1:21"));
+        }
+        assertEquals(1, health.getRejected());
+    }
+
+    @Test
+    public void successResetsFailures() throws IOException {
+        ServerHealth health = new ServerHealth("LPAR1:21", "LPAR1", 21);
+        for (int i = 1; i < threshold; i++)
+            health.failure(new IOException("Connection refused"));
+        health.success();
+        assertEquals(0, health.getFailures());
+        for (int i = 1; i < threshold; i++)
+            health.failure(new IOException("Connection refused"));
+        assertFalse(health.isOpen());
+        health.check();
+    }
+
+    @Test
+    public void furtherFailuresDontTripAgain() {
+        ServerHealth health = open(21);
+        health.failure(new IOException("Connection refused"));
+        assertTrue(health.isOpen());
+        assertEquals(1, health.getTrips());
+    }
+
+    @Test(timeout = 10000)
+    public void probeClosesCircuitOnGreeting() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            ServerHealth health = open(server.getLocalPort());
+            assertTrue(health.isOpen());
+            Thread greeter = new Thread(() -> {
+                try (Socket client = server.accept()) {
+                    OutputStream out = client.getOutputStream();
+                    out.write("220 FTP server ready\r\n".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    // Wait for the probe to hang up.
+                    client.getInputStream().read();
+                } catch (IOException ignored) {
+                }
+            });
+            greeter.start();
+            health.probe();
+            greeter.join();
+            assertFalse(health.isOpen());
+            assertEquals(0, health.getFailures());
+            health.check();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void probeKeepsCircuitOpenWhileServerIsDown() throws IOException {
+        ServerHealth health = open(closedPort());
+        health.probe();
+        assertTrue(health.isOpen());
+        assertEquals(1, health.getTrips());
+        assertNotNull(health.getLastError());
+    }
+
+    @Test(timeout = 10000)
+    public void probeKeepsCircuitOpenOnRefusal() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            ServerHealth health = open(server.getLocalPort());
+            Thread refuser = new Thread(() -> {
+                try (Socket client = server.accept()) {
+                    client.getOutputStream().write("421 Too many sessions\r\n".getBytes(StandardCharsets.US_ASCII));
+                    client.getOutputStream().flush();
+                    client.getInputStream().read();
+                } catch (IOException ignored) {
+                }
+            });
+            refuser.start();
+            health.probe();
+            refuser.join();
+            assertTrue(health.isOpen());
+            assertTrue(health.getLastError(), health.getLastError().contains("421"));
+        }
+    }
+}
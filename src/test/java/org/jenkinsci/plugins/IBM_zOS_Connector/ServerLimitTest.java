@@ -0,0 +1,87 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ServerLimitTest {
+    @Test
+    public void limitsOpenSessions() throws IOException {
+        ZFTPSessionPool.ServerLimit limit = new ZFTPSessionPool.ServerLimit("zos:21", 2, 1000);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.getOpen());
+
+        limit.release();
+        assertEquals(1, limit.getOpen());
+        limit.acquire();
+        assertEquals(2, limit.getOpen());
+        assertEquals(1, limit.getWaits());
+        assertEquals(0, limit.getTimeouts());
+    }
+
+    @Test
+    public void noLimit() throws IOException {
+        ZFTPSessionPool.ServerLimit limit = new ZFTPSessionPool.ServerLimit("zos:21", 0, 0);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        limit.acquire();
+        assertEquals(101, limit.getOpen());
+        assertEquals(0, limit.getTimeouts());
+    }
+
+    @Test
+    public void queueTimeout() {
+        ZFTPSessionPool.ServerLimit limit = new ZFTPSessionPool.ServerLimit("zos:21", 1, 50);
+        assertTrue(limit.tryAcquire());
+        try {
+            limit.acquire();
+            fail("acquired over the limit");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("No free FTP session to zos:21"));
+            assertTrue(e.getMessage(), e.getMessage().endsWith("(limit 1 sessions)"));
+        }
+        assertEquals(1, limit.getOpen());
+        assertEquals(1, limit.getWaits());
+        assertEquals(1, limit.getTimeouts());
+        assertTrue(limit.getMaxWaitTime() >= 50);
+    }
+
+    @Test
+    public void releaseServesQueueFirst() throws Exception {
+        ZFTPSessionPool.ServerLimit limit = new ZFTPSessionPool.ServerLimit("zos:21", 1, 60000);
+        assertTrue(limit.tryAcquire());
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        AtomicReference<IOException> error = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                limit.acquire();
+                acquired.countDown();
+            } catch (IOException e) {
+                error.set(e);
+            }
+        });
+        waiter.start();
+        while (limit.getQueueLength() == 0) {
+            Thread.sleep(1);
+        }
+
+        limit.release();
+        // The waiter holds the permit now, a caller that didn't queue doesn't get it.
+        assertFalse(limit.tryAcquire());
+        assertTrue(acquired.await(10, TimeUnit.SECONDS));
+        waiter.join();
+        assertNull(error.get());
+        assertEquals(1, limit.getOpen());
+        assertEquals(0, limit.getQueueLength());
+        assertEquals(0, limit.getTimeouts());
+    }
+}
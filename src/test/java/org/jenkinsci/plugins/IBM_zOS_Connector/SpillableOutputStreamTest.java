@@ -0,0 +1,111 @@
+package org.jenkinsci.plugins.IBM_zOS_Connector;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class SpillableOutputStreamTest {
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String readBack(SpillableOutputStream buffer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = buffer.openInputStream()) {
+            for (int b = in.read(); b >= 0; b = in.read())
+                out.write(b);
+        }
+        return out.toString("US-ASCII");
+    }
+
+    @Test
+    public void staysInMemoryUpToThreshold() throws IOException {
+        SpillableOutputStream buffer = new SpillableOutputStream(10);
+        buffer.write(bytes("01234"));
+        buffer.write(bytes("56789"));
+        buffer.close();
+        assertFalse(buffer.isSpilled());
+        assertEquals(10, buffer.size());
+        assertEquals("0123456789", readBack(buffer));
+        buffer.discard();
+    }
+
+    @Test
+    public void spillsOverThreshold() throws IOException {
+        int files = SpillableOutputStream.getSpillFiles();
+        long spills = SpillableOutputStream.getSpills();
+        SpillableOutputStream buffer = new SpillableOutputStream(10);
+        buffer.write(bytes("0123456789"));
+        assertFalse(buffer.isSpilled());
+        buffer.write('A');
+        assertTrue(buffer.isSpilled());
+        buffer.write(bytes("BCDEF\n"));
+        buffer.close();
+        assertEquals(17, buffer.size());
+        assertTrue(buffer.endsWithNewline());
+        assertEquals(files + 1, SpillableOutputStream.getSpillFiles());
+        assertEquals(spills + 1, SpillableOutputStream.getSpills());
+
+        // Both ways of reading back give what was written, in memory part included.
+        assertEquals("0123456789ABCDEF\n", readBack(buffer));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        assertEquals("0123456789ABCDEF\n", out.toString("US-ASCII"));
+
+        buffer.discard();
+        assertEquals(files, SpillableOutputStream.getSpillFiles());
+    }
+
+    @Test
+    public void emptyBuffer() throws IOException {
+        SpillableOutputStream buffer = new SpillableOutputStream(10);
+        buffer.close();
+        assertEquals(0, buffer.size());
+        assertFalse(buffer.endsWithNewline());
+        assertEquals("", readBack(buffer));
+    }
+
+    @Test
+    public void discardTwice() {
+        int files = SpillableOutputStream.getSpillFiles();
+        SpillableOutputStream buffer = new SpillableOutputStream(0);
+        try {
+            buffer.write('x');
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+        buffer.discard();
+        buffer.discard();
+        assertEquals(files, SpillableOutputStream.getSpillFiles());
+    }
+
+    @Test(expected = IOException.class)
+    public void writeToAfterDiscard() throws IOException {
+        SpillableOutputStream buffer = new SpillableOutputStream(10);
+        buffer.write(bytes("data"));
+        buffer.close();
+        buffer.discard();
+        buffer.writeTo(new ByteArrayOutputStream());
+    }
+
+    @Test(expected = IOException.class)
+    public void readAfterDiscard() throws IOException {
+        SpillableOutputStream buffer = new SpillableOutputStream(2);
+        buffer.write(bytes("data"));
+        buffer.close();
+        buffer.discard();
+        buffer.openInputStream();
+    }
+
+    @Test(expected = IOException.class)
+    public void writeAfterDiscard() throws IOException {
+        SpillableOutputStream buffer = new SpillableOutputStream(10);
+        buffer.discard();
+        buffer.write('x');
+    }
+}